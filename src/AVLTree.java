@@ -10,6 +10,8 @@ public class AVLTree {
     private Node root;
     private int size;
     private final String category;
+    private final PowerSummary powerSummary;
+    private boolean inserted;  // Set by insertNode when it adds a node
 
 
 
@@ -21,6 +23,7 @@ public class AVLTree {
         private Node left;
         private Node right;
         private int height;
+        private int count;  // The number of nodes in the subtree rooted here
 
         /**
          * Constructs a new Node with the specified Spell object.
@@ -32,6 +35,7 @@ public class AVLTree {
             left = null;
             right = null;
             height = 0;
+            count = 1;
         }
     }
 
@@ -43,9 +47,21 @@ public class AVLTree {
      * @param spell The initial spell to be inserted as the root of the tree.
      */
     public AVLTree(Spell spell) {
+        this(spell, PowerHistogram.DEFAULT_BIN_WIDTH);
+    }
+
+    /**
+     * Constructor for AVLTree with a custom power level histogram bin width.
+     *
+     * @param spell    The initial spell to be inserted as the root of the tree.
+     * @param binWidth The initial bin width of the power level histogram.
+     */
+    public AVLTree(Spell spell, int binWidth) {
         root = new Node(spell);
         size = 1;
         category = spell.getCategory();
+        powerSummary = new PowerSummary(binWidth);
+        powerSummary.add(spell.getPowerLevel());
     }
 
     /**
@@ -75,6 +91,43 @@ public class AVLTree {
         return category;
     }
 
+    /**
+     * Returns a copy of the power level summary of the AVLTree. It does not change on later inserts.
+     *
+     * @return The power level summary of the AVLTree.
+     */
+    public PowerSummary getPowerSummary() {
+        return new PowerSummary(powerSummary);
+    }
+
+    /**
+     * Returns the live power level summary of the AVLTree, for callers that only read it, such as a merge.
+     *
+     * @return The power level summary of the AVLTree.
+     */
+    PowerSummary livePowerSummary() {
+        return powerSummary;
+    }
+
+    /**
+     * Returns an approximate quantile of the power levels in the AVLTree, without copying the summary.
+     *
+     * @param q The quantile, between 0 and 1.
+     * @return The power level at the quantile.
+     */
+    public int getPowerQuantile(double q) {
+        return powerSummary.quantile(q);
+    }
+
+    /**
+     * Returns a copy of the power level histogram of the AVLTree. It does not change on later inserts.
+     *
+     * @return The power level histogram of the AVLTree.
+     */
+    public PowerHistogram getPowerHistogram() {
+        return powerSummary.getHistogram();
+    }
+
     /**
      * Searches for a spell with the given name and power level in the AVLTree.
      *
@@ -109,13 +162,37 @@ public class AVLTree {
     }
 
     /**
-     * Inserts a new spell into the AVLTree.
+     * Checks whether a spell with the given power level is in the AVLTree.
+     *
+     * @param powerLevel The power level to look for.
+     * @return True if a spell has the power level, false otherwise.
+     */
+    public boolean containsPowerLevel(int powerLevel) {
+        Node node = root;
+        while (node != null) {
+            if (node.spell.getPowerLevel() == powerLevel) {
+                return true;
+            }
+            node = node.spell.getPowerLevel() < powerLevel ? node.right : node.left;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a new spell into the AVLTree. A spell whose power level is already in the tree is not stored.
      *
      * @param spell The spell to be inserted.
+     * @return True if the spell was stored, false if its power level was already taken.
      */
-    public void insert(Spell spell) {
+    public boolean insert(Spell spell) {
+        inserted = false;
         root = insertNode(root, spell);
+        if (!inserted) {
+            return false;
+        }
         size ++;
+        powerSummary.add(spell.getPowerLevel());
+        return true;
     }
 
     /**
@@ -127,6 +204,7 @@ public class AVLTree {
      */
     private Node insertNode(Node node, Spell spell) {
         if (node == null) {
+            inserted = true;
             return new Node(spell);
         }
         else if (node.spell.getPowerLevel() > spell.getPowerLevel()) {
@@ -169,11 +247,36 @@ public class AVLTree {
     }
 
     /**
-     * Updates the height of a given node.
+     * Updates the height and the subtree size of a given node from those of its children.
      * @param node - the node is updated
      */
     void updateNodeHeight(Node node) {
         node.height = 1 + Math.max(getHeight(node.left), getHeight(node.right));
+        node.count = 1 + getCount(node.left) + getCount(node.right);
+    }
+
+    /**
+     * Returns the spell with the k-th highest power level, found with a single descent using the subtree sizes.
+     *
+     * @param k The rank of the spell, 1 for the most powerful.
+     * @return The spell, or null if the AVLTree holds fewer than k spells.
+     */
+    public Spell getKthStrongest(int k) {
+        Node node = root;
+        while (node != null) {
+            int stronger = getCount(node.right);
+            if (k <= stronger) {
+                node = node.right;
+            }
+            else if (k == stronger + 1) {
+                return node.spell;
+            }
+            else {
+                k -= stronger + 1;
+                node = node.left;
+            }
+        }
+        return null;
     }
 
     /**
@@ -183,27 +286,25 @@ public class AVLTree {
      * @return A list of the top K spells.
      */
     public List<Spell> getTopK(int k) {
-        ArrayList<Spell> topSpells = new ArrayList<>();
-        getTopKSpells(root,topSpells);
-        ArrayList<Spell> topK = new ArrayList<>();
-        int min = Math.min(k, getSize());
-        for (int i = 0; min > i; i++){
-            topK.add(topSpells.get(i));
-        }
+        ArrayList<Spell> topK = new ArrayList<>(Math.max(0, Math.min(k, getSize())));
+        getTopKSpells(root, topK, k);
         return topK;
     }
 
     /**
      * Retrieves the top K spells in the AVLTree based on power level and adds them to the provided list.
+     * The traversal stops once K spells are collected, so it visits O(K + log n) nodes.
      *
      * @param node      The current node being visited during the traversal.
      * @param topSpells The list to store the top K spells.
+     * @param k         The number of top spells to retrieve.
      */
-    private void getTopKSpells(Node node, List<Spell> topSpells) {
-        if (node != null) {
-            getTopKSpells(node.right, topSpells);
-            topSpells.add(node.spell);
-            getTopKSpells(node.left, topSpells);
+    private void getTopKSpells(Node node, List<Spell> topSpells, int k) {
+        if (node != null && topSpells.size() < k) {
+            getTopKSpells(node.right, topSpells, k);
+            if (topSpells.size() < k)
+                topSpells.add(node.spell);
+            getTopKSpells(node.left, topSpells, k);
         }
     }
 
@@ -219,6 +320,18 @@ public class AVLTree {
         return node.height;
     }
 
+    /**
+     * Returns the number of nodes in the subtree of the specified node.
+     *
+     * @param node The node to get the subtree size of.
+     * @return The subtree size, or 0 if the node is null.
+     */
+    private int getCount(Node node) {
+        if (node == null)
+            return 0;
+        return node.count;
+    }
+
     /**
      * Calculates and returns the balance factor of the specified node.
      *
@@ -244,8 +357,8 @@ public class AVLTree {
         x.right = y;
         y.left = T2;
 
+        updateNodeHeight(y);  // y is now a child of x, so it goes first
         updateNodeHeight(x);
-        updateNodeHeight(y);
 
         return x;
     }
@@ -263,8 +376,8 @@ public class AVLTree {
         x.left = y;
         y.right = T2;
 
+        updateNodeHeight(y);  // y is now a child of x, so it goes first
         updateNodeHeight(x);
-        updateNodeHeight(y);
 
         return x;
     }
@@ -0,0 +1,46 @@
+import java.util.SplittableRandom;
+
+/**
+ * BenchmarkSpells generates the synthetic spells shared by the benchmarks.
+ */
+public final class BenchmarkSpells {
+    /** The number of categories the benchmark spells are spread over. */
+    public static final int CATEGORIES = 16;
+
+    private BenchmarkSpells() {
+    }
+
+    /**
+     * Returns the i-th benchmark spell, in category i mod CATEGORIES with power level i.
+     * Power levels are therefore unique within a category, so every spell is stored.
+     *
+     * @param i the index of the spell
+     * @return the spell
+     */
+    public static Spell spell(int i) {
+        return new Spell("spell-" + i, category(i), i, "words");
+    }
+
+    /**
+     * Returns the category of the i-th benchmark spell.
+     *
+     * @param i the index of the spell
+     * @return the category
+     */
+    public static String category(int i) {
+        return "category-" + (i % CATEGORIES);
+    }
+
+    /**
+     * Returns a random spell name of 6 to 16 lowercase letters.
+     *
+     * @param random the random source
+     * @return the name
+     */
+    public static String randomName(SplittableRandom random) {
+        char[] chars = new char[6 + random.nextInt(11)];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+}
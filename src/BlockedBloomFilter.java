@@ -0,0 +1,102 @@
+/**
+ * BlockedBloomFilter is a mutable MembershipFilter in which every key lives in a single 512 bit block,
+ * the size of a cache line. A key sets one bit in each of the 8 longs of its block, so a lookup reads
+ * one block (one or two cache lines) and needs no further hashing.
+ * At 10 bits per key the false positive rate is about 1%.
+ */
+public class BlockedBloomFilter implements MembershipFilter {
+    /** The default number of bits per expected key. */
+    public static final int DEFAULT_BITS_PER_KEY = 10;
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int[] SALTS = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+    private final long[] bits;
+    private final int blocks;
+    private final int expectedKeys;
+    private int count;
+
+    /**
+     * Constructs an empty BlockedBloomFilter.
+     *
+     * @param expectedKeys the number of keys the filter is sized for
+     * @param bitsPerKey   the number of bits to use per expected key
+     * @throws IllegalArgumentException if bitsPerKey is not positive
+     */
+    public BlockedBloomFilter(int expectedKeys, int bitsPerKey) {
+        if (bitsPerKey < 1)
+            throw new IllegalArgumentException("Bits per key must be positive: " + bitsPerKey);
+        this.expectedKeys = Math.max(1, expectedKeys);
+        long totalBits = (long) this.expectedKeys * bitsPerKey;
+        blocks = (int) Math.max(1, (totalBits + 511) / 512);
+        bits = new long[blocks * WORDS_PER_BLOCK];
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key the 64-bit hash of the key
+     */
+    public void add(long key) {
+        int base = block(key) * WORDS_PER_BLOCK;
+        int h = (int) key;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++)
+            bits[base + i] |= 1L << ((h * SALTS[i]) >>> 26);
+        count++;
+    }
+
+    /**
+     * Returns false if the key was certainly never added, true if it may have been.
+     *
+     * @param key the 64-bit hash of the key
+     * @return true if the key may be in the set
+     */
+    @Override
+    public boolean mightContain(long key) {
+        int base = block(key) * WORDS_PER_BLOCK;
+        int h = (int) key;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((bits[base + i] & (1L << ((h * SALTS[i]) >>> 26))) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of keys added.
+     *
+     * @return the number of keys
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of keys the filter was sized for. Past it, the false positive rate climbs.
+     *
+     * @return the expected number of keys
+     */
+    public int getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    /**
+     * Returns the memory used by the filter's bits.
+     *
+     * @return the size in bytes
+     */
+    @Override
+    public long getSizeInBytes() {
+        return bits.length * 8L;
+    }
+
+    /**
+     * Returns the block of a key, taken from its upper 32 bits.
+     *
+     * @param key the 64-bit hash of the key
+     * @return the block index
+     */
+    private int block(long key) {
+        return (int) (((key >>> 32) * blocks) >>> 32);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChangeFeedBenchmark measures what a SpellChangeFeed costs the write path and how fast events reach subscribers.
+ * The write path is the time per addSpell without a feed, with a feed but no subscribers, and with 1 and 4
+ * subscribers under every OverflowPolicy. Delivery latency is measured from just before addSpell to the
+ * arrival of its INSERT event, with inserts paced so the subscriber is not simply queueing.
+ */
+public class ChangeFeedBenchmark {
+    private static final int TOP_K = 10;
+
+    /**
+     * Runs the benchmark.
+     * Usage: ChangeFeedBenchmark [spells] [ringCapacity]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 14;
+
+        System.out.println("Write path, " + n + " spells, ring capacity " + capacity);
+        for (int round = 0; round < 2; round++) {  // The first round warms up the JIT
+            boolean print = round == 1;
+            writePath("no feed", n, null, 0, print);
+            writePath("no subscribers", n, new SpellChangeFeed(capacity, SpellChangeFeed.OverflowPolicy.BLOCK), 0, print);
+            for (SpellChangeFeed.OverflowPolicy policy : SpellChangeFeed.OverflowPolicy.values()) {
+                writePath(policy + " x1", n, new SpellChangeFeed(capacity, policy), 1, print);
+                writePath(policy + " x4", n, new SpellChangeFeed(capacity, policy), 4, print);
+            }
+        }
+
+        System.out.println();
+        System.out.println("Delivery latency, 1 subscriber, one insert every 20 us");
+        latency(Math.min(n, 100_000), capacity);
+    }
+
+    /**
+     * Times addSpell with the given feed and number of idle subscribers, and prints one result row.
+     *
+     * @param name        the name of the configuration
+     * @param n           the number of spells to add
+     * @param feed        the feed to attach, or null for none
+     * @param subscribers the number of subscribers
+     * @param print       whether to print the result row
+     */
+    private static void writePath(String name, int n, SpellChangeFeed feed, int subscribers, boolean print) {
+        HashAVLSpellTable table = new HashAVLSpellTable(101);
+        SpellChangeFeed.Subscription[] subscriptions = new SpellChangeFeed.Subscription[subscribers];
+        if (feed != null) {
+            table.setChangeFeed(feed, TOP_K);
+            for (int i = 0; i < subscribers; i++)
+                subscriptions[i] = feed.subscribe((event, endOfBatch) -> { });
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++)
+            table.addSpell(BenchmarkSpells.spell(i));
+        long elapsed = System.nanoTime() - start;
+
+        long published = feed == null ? 0 : feed.getCursor() + 1;
+        for (int i = 0; i < subscribers; i++) {
+            while (subscriptions[i].getSequence() < feed.getCursor())
+                LockSupport.parkNanos(100_000);  // Lets the subscriber drain the ring
+        }
+        long missed = 0;
+        for (SpellChangeFeed.Subscription s : subscriptions) {
+            missed += s.getMissed();
+            s.close();
+        }
+        if (print) {
+            System.out.printf("  %-28s %8.1f ns/addSpell  published %9d  dropped %9d  missed %9d%n",
+                    name, (double) elapsed / n, published, feed == null ? 0 : feed.getDropped(), missed);
+        }
+    }
+
+    /**
+     * Measures the time from addSpell to the arrival of its INSERT event at a subscriber.
+     *
+     * @param n        the number of spells to add
+     * @param capacity the ring capacity
+     */
+    private static void latency(int n, int capacity) {
+        HashAVLSpellTable table = new HashAVLSpellTable(101);
+        SpellChangeFeed feed = new SpellChangeFeed(capacity, SpellChangeFeed.OverflowPolicy.BLOCK);
+        table.setChangeFeed(feed, TOP_K);
+
+        long[] sent = new long[n];
+        long[] latencies = new long[n];
+        AtomicLong received = new AtomicLong();
+        SpellChangeFeed.Subscription subscription = feed.subscribe((event, endOfBatch) -> {
+            if (event.getType() == SpellEvent.Type.INSERT) {
+                int i = event.getPowerLevel();  // The benchmark spells use their index as power level
+                latencies[i] = System.nanoTime() - sent[i];
+                received.lazySet(i + 1);
+            }
+        });
+
+        for (int i = 0; i < n; i++) {
+            sent[i] = System.nanoTime();
+            table.addSpell(BenchmarkSpells.spell(i));
+            LockSupport.parkNanos(20_000);
+        }
+        while (received.get() < n)
+            LockSupport.parkNanos(100_000);
+        subscription.close();
+
+        Arrays.sort(latencies);
+        System.out.printf("  p50 %.1f us  p99 %.1f us  p999 %.1f us  max %.1f us%n",
+                latencies[n / 2] / 1e3, latencies[(int) (n * 0.99)] / 1e3,
+                latencies[(int) (n * 0.999)] / 1e3, latencies[n - 1] / 1e3);
+    }
+}
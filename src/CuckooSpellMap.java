@@ -0,0 +1,207 @@
+import java.util.Random;
+
+/**
+ * CuckooSpellMap is a SpellMap using bucketized cuckoo hashing.
+ * Every name has two candidate buckets of 4 slots each, so a lookup reads at most 8 slots.
+ * When both buckets of a new spell are full, a random resident is evicted to its other bucket,
+ * which may evict another one, up to MAX_KICKS times. If no free slot is reached the displacements
+ * are undone and the insertion fails, leaving the map unchanged. The map allocates about capacity / 0.9
+ * slots, so that it can always hold capacity spells.
+ */
+public class CuckooSpellMap implements SpellMap {
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD_FACTOR = 0.9;  // Two choices of 4 slots cannot reliably fill every slot
+
+    private final SpellSimple[] slots;
+    private final int buckets;
+    private final int capacity;
+    private final int[] path = new int[MAX_KICKS];
+    private final Random random = new Random(0);
+    private int size;
+    private int steps = 0;
+
+    /**
+     * Constructs a CuckooSpellMap with the specified capacity.
+     *
+     * @param capacity the maximum number of spells the map can hold
+     */
+    public CuckooSpellMap(int capacity) {
+        this.capacity = capacity;
+        int slotCount = (int) Math.ceil(capacity / MAX_LOAD_FACTOR);
+        buckets = Math.max(2, (slotCount + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        slots = new SpellSimple[buckets * BUCKET_SIZE];
+        size = 0;
+    }
+
+    /**
+     * Inserts a new spell into the map.
+     *
+     * @param spell the SpellSimple object to be inserted
+     * @return true if the spell is successfully inserted, false if a spell with the same name exists or the map is full
+     */
+    @Override
+    public boolean put(SpellSimple spell) {
+        steps = 0;
+        String name = spell.getName();
+        int hash = SpellMap.hash(name);
+        int b1 = bucket1(hash);
+        int b2 = bucket2(hash, b1);
+
+        if (find(b1, name) >= 0 || find(b2, name) >= 0)
+            return false;  // Spell with the same name already exists
+        if (size >= capacity)
+            return false;
+
+        int free = freeSlot(b1);
+        if (free < 0)
+            free = freeSlot(b2);
+        if (free >= 0) {
+            slots[free] = spell;
+            size++;
+            return true;
+        }
+
+        SpellSimple carry = spell;
+        int bucket = random.nextBoolean() ? b1 : b2;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = bucket * BUCKET_SIZE + random.nextInt(BUCKET_SIZE);
+            path[kick] = slot;
+            SpellSimple victim = slots[slot];
+            slots[slot] = carry;
+            carry = victim;
+            steps = kick + 1;
+
+            bucket = otherBucket(carry.getName(), bucket);
+            free = freeSlot(bucket);
+            if (free >= 0) {
+                slots[free] = carry;
+                size++;
+                return true;
+            }
+        }
+
+        for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+            SpellSimple displaced = slots[path[kick]];
+            slots[path[kick]] = carry;
+            carry = displaced;
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the cast words for a spell with the specified name.
+     *
+     * @param name the name of the spell
+     * @return the cast words for the spell if found, or null if the spell is not in the map
+     */
+    @Override
+    public String getCastWords(String name) {
+        int hash = SpellMap.hash(name);
+        int b1 = bucket1(hash);
+        int slot = find(b1, name);
+        steps = 0;
+        if (slot < 0) {
+            slot = find(bucket2(hash, b1), name);
+            steps = 1;
+        }
+        return slot < 0 ? null : slots[slot].getWords();
+    }
+
+    /**
+     * Returns the number of spells currently stored in the map.
+     *
+     * @return the size of the map
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of steps taken in the last operation: for put the number of evictions,
+     * for getCastWords 0 if the first bucket answered and 1 if the second bucket was read too.
+     *
+     * @return the number of steps
+     */
+    @Override
+    public int getLastSteps() { return steps; }
+
+    /**
+     * Returns the number of slots the map allocated.
+     *
+     * @return the number of slots
+     */
+    @Override
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the slot of a name within a bucket.
+     *
+     * @param bucket the bucket to search
+     * @param name   the name of the spell
+     * @return the slot index, or -1 if the name is not in the bucket
+     */
+    private int find(int bucket, String name) {
+        int base = bucket * BUCKET_SIZE;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            if (slots[i] != null && slots[i].getName().equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first free slot of a bucket.
+     *
+     * @param bucket the bucket to search
+     * @return the slot index, or -1 if the bucket is full
+     */
+    private int freeSlot(int bucket) {
+        int base = bucket * BUCKET_SIZE;
+        for (int i = base; i < base + BUCKET_SIZE; i++) {
+            if (slots[i] == null)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the candidate bucket of a name that is not the given one.
+     *
+     * @param name   the name of the spell
+     * @param bucket one of the two candidate buckets of the name
+     * @return the other candidate bucket
+     */
+    private int otherBucket(String name, int bucket) {
+        int hash = SpellMap.hash(name);
+        int b1 = bucket1(hash);
+        return bucket == b1 ? bucket2(hash, b1) : b1;
+    }
+
+    /**
+     * Returns the first candidate bucket for a hash value.
+     *
+     * @param hash the mixed hash value
+     * @return the first bucket
+     */
+    private int bucket1(int hash) {
+        return (hash & 0x7FFFFFFF) % buckets;
+    }
+
+    /**
+     * Returns the second candidate bucket for a hash value, which always differs from the first.
+     *
+     * @param hash the mixed hash value
+     * @param b1   the first bucket
+     * @return the second bucket
+     */
+    private int bucket2(int hash, int b1) {
+        int h = hash * 0x85EBCA6B;
+        h ^= h >>> 13;
+        int b2 = (h & 0x7FFFFFFF) % buckets;
+        return b2 == b1 ? (b2 + 1) % buckets : b2;
+    }
+}
@@ -3,11 +3,15 @@
  * The key is the name of the magic spell, and the value is the spell words required to cast the spell.
  * It provides methods to insert spells and retrieve spell words based on the spell name.
  */
-public class DoubleHashTable {
+public class DoubleHashTable implements SpellMap {
     private final SpellSimple[] table;
     private final int capacity;
     private int size;
     private int steps = 0;
+    private SpellChangeFeed changeFeed;
+    private MembershipFilter filter;
+    private BlockedBloomFilter bloomFilter;
+    private int filterBitsPerKey;
 
     /**
      * Constructs a DoubleHashTable object with the specified capacity.
@@ -26,6 +30,7 @@ public class DoubleHashTable {
      * @param spell the SpellSimple object to be inserted
      * @return true if the spell is successfully inserted, false if the hash table is full
      */
+    @Override
     public boolean put(SpellSimple spell) {
         //int stepsBefore = steps;
         int h1 = hash1(spell.getName());
@@ -34,20 +39,24 @@ public class DoubleHashTable {
         if (table[h1] == null){
             table[h1] = spell;
             size++;
+            afterPut(spell);
             return true;
         }
+        if (table[h1].getName().equals(spell.getName()))
+            return false;  // Spell with the same name already exists
 
         for (int i = 1; i < capacity; i++) {
-            int index = (h1 + i * h2) % capacity;
+            int index = (int) ((h1 + (long) i * h2) % capacity);
             steps = i;
 
             if (table[index] == null) {
                 table[index] = spell;
                 size++;
+                afterPut(spell);
                 return true;
             }
 
-            if (table[h1].getName().equals(spell.getName()))
+            if (table[index].getName().equals(spell.getName()))
                 return false;  // Spell with the same name already exists
         }
 
@@ -62,19 +71,30 @@ public class DoubleHashTable {
      * @param name the name of the spell
      * @return the cast words for the spell if found, or null if the spell is not in the hash table
      */
+    @Override
     public String getCastWords(String name) {
         //int stepsBefore = steps;
+        if (filter != null && !filter.mightContain(MembershipFilter.hash(name))) {
+            steps = 0;
+            return null;  // Certainly a miss, so the probe sequence is skipped
+        }
         int h1 = hash1(name);
         int h2 = hash2(name);
 
+        if (table[h1] == null) {
+            return null;
+        }
         if (table[h1].getName().equals(name)){
             return table[h1].getWords();
         }
 
         for (int i = 1; i < capacity; i++) {
-            int index = (h1 + i * h2) % capacity;
+            int index = (int) ((h1 + (long) i * h2) % capacity);
             steps = i;
 
+            if (table[index] == null) {
+                return null;  // An empty slot ends the probe sequence
+            }
             if (table[index].getName().equals(name)) {
                 return table[index].getWords();
             }
@@ -89,6 +109,7 @@ public class DoubleHashTable {
      *
      * @return the size of the hash table
      */
+    @Override
     public int getSize() {
         return size;
     }
@@ -98,8 +119,106 @@ public class DoubleHashTable {
      *
      * @return the number of steps
      */
+    @Override
     public int getLastSteps() { return steps; }
 
+    /**
+     * Returns the number of slots of the hash table, which is its capacity.
+     *
+     * @return the number of slots
+     */
+    @Override
+    public int getSlotCount() {
+        return capacity;
+    }
+
+    /**
+     * Attaches a change feed that receives an INSERT and a SIZE_CHANGE event for every spell put.
+     * Events are only built while the feed has subscribers.
+     *
+     * @param feed the feed to publish to, or null to stop publishing
+     */
+    public void setChangeFeed(SpellChangeFeed feed) {
+        changeFeed = feed;
+    }
+
+    /**
+     * Puts a membership filter in front of getCastWords, so that most misses skip the probe sequence.
+     * The filter is a BlockedBloomFilter sized for the capacity of the table and kept up to date by put.
+     *
+     * @param bitsPerKey the number of filter bits per spell, e.g. BlockedBloomFilter.DEFAULT_BITS_PER_KEY
+     */
+    public void enableFilter(int bitsPerKey) {
+        filterBitsPerKey = bitsPerKey;
+        bloomFilter = new BlockedBloomFilter(capacity, bitsPerKey);
+        for (SpellSimple spell : table) {
+            if (spell != null)
+                bloomFilter.add(MembershipFilter.hash(spell.getName()));
+        }
+        filter = bloomFilter;
+    }
+
+    /**
+     * Replaces the filter with a static XorFilter of the spells stored now, for a table that is done loading.
+     * It is smaller and has fewer false positives than the Bloom filter. A later put switches back to a
+     * rebuilt Bloom filter, with the bits per key given to enableFilter or DEFAULT_BITS_PER_KEY if it was
+     * never called.
+     */
+    public void freezeFilter() {
+        if (filterBitsPerKey == 0)
+            filterBitsPerKey = BlockedBloomFilter.DEFAULT_BITS_PER_KEY;  // For the Bloom filter a later insert builds
+        long[] keys = new long[size];
+        int n = 0;
+        for (SpellSimple spell : table) {
+            if (spell != null)
+                keys[n++] = MembershipFilter.hash(spell.getName());
+        }
+        filter = XorFilter.build(keys);
+        bloomFilter = null;
+    }
+
+    /**
+     * Removes the filter from the lookup path.
+     */
+    public void disableFilter() {
+        filter = null;
+        bloomFilter = null;
+    }
+
+    /**
+     * Returns the filter in front of getCastWords.
+     *
+     * @return the filter, or null if none is enabled
+     */
+    public MembershipFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Keeps the filter and the change feed up to date after a successful put.
+     *
+     * @param spell the spell that was inserted
+     */
+    private void afterPut(SpellSimple spell) {
+        if (bloomFilter != null)
+            bloomFilter.add(MembershipFilter.hash(spell.getName()));
+        else if (filter != null)
+            enableFilter(filterBitsPerKey);  // The frozen filter cannot take new keys
+        publishPut(spell);
+    }
+
+    /**
+     * Publishes the events of a successful put to the change feed, if one is attached.
+     *
+     * @param spell the spell that was inserted
+     */
+    private void publishPut(SpellSimple spell) {
+        if (changeFeed != null && changeFeed.hasSubscribers()) {
+            changeFeed.publish(SpellEvent.insert(null, spell.getName(), 0));
+            changeFeed.publish(SpellEvent.sizeChange(size));
+        }
+    }
+
     /**
      * Calculates the hash value using the first hash function for a given name.
      *
@@ -110,7 +229,7 @@ public class DoubleHashTable {
         int hash = 0;
         for (char c: name.toCharArray())
             hash = hash + c * 31;
-        return hash % capacity;
+        return Math.floorMod(hash, capacity);  // The sum overflows to a negative value for long names
     }
 
     /**
@@ -123,6 +242,6 @@ public class DoubleHashTable {
         int hash = 0;
         for (char c : name.toCharArray())
             hash = hash + c * 13;
-        return 1 + (hash % (capacity - 2));
+        return 1 + Math.floorMod(hash, capacity - 2);
     }
 }
\ No newline at end of file
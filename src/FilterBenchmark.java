@@ -0,0 +1,190 @@
+import java.util.SplittableRandom;
+
+/**
+ * FilterBenchmark measures the MembershipFilters on their own and in front of the spell tables.
+ * For the BlockedBloomFilter at several bits per key and for the XorFilter it reports the false positive
+ * rate, the memory per key, the build time and the time per lookup. It then times missing lookups in
+ * DoubleHashTable.getCastWords and HashAVLSpellTable.searchSpell without a filter, with a Bloom filter
+ * and with a frozen xor filter, and successful lookups to show what the filter adds to a hit.
+ */
+public class FilterBenchmark {
+    private static final int[] BITS_PER_KEY = {8, 10, 12, 16};
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     * Usage: FilterBenchmark [keys] [capacity]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 65537;  // Prime, as DoubleHashTable needs
+
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[n];
+        long[] absent = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextLong();
+            absent[i] = random.nextLong();
+        }
+
+        for (int round = 0; round < 2; round++) {  // The first round warms up the JIT
+            boolean print = round == 1;
+            if (print) {
+                System.out.println("Filters, " + n + " keys, best of " + ROUNDS + " rounds");
+                System.out.printf("  %-10s %10s %10s %10s %10s %10s%n",
+                        "filter", "fpp %", "bits/key", "build ms", "hit ns", "miss ns");
+            }
+            for (int bitsPerKey : BITS_PER_KEY)
+                filter("bloom-" + bitsPerKey, keys, absent, bitsPerKey, print);
+            filter("xor8", keys, absent, 0, print);
+        }
+
+        int stored = (int) (0.8 * capacity);
+        String[] names = new String[stored];
+        String[] misses = new String[stored];
+        for (int i = 0; i < stored; i++) {
+            names[i] = BenchmarkSpells.randomName(random);
+            misses[i] = BenchmarkSpells.randomName(random) + "?";
+        }
+        for (int round = 0; round < 2; round++) {
+            boolean print = round == 1;
+            if (print) {
+                System.out.println();
+                System.out.println("Tables, " + stored + " spells, best of " + ROUNDS + " rounds");
+                System.out.printf("  %-32s %10s %10s%n", "lookup", "hit ns", "miss ns");
+            }
+            for (String mode : new String[] {"none", "bloom", "xor"}) {
+                doubleHashTable(mode, capacity, names, misses, print);
+                hashAVLSpellTable(mode, names, misses, print);
+            }
+        }
+    }
+
+    /**
+     * Builds one filter, measures it and prints one result row.
+     *
+     * @param name       the name of the filter
+     * @param keys       the keys to add
+     * @param absent     keys that are never added
+     * @param bitsPerKey the bits per key of a BlockedBloomFilter, or 0 for an XorFilter
+     * @param print      whether to print the result row
+     */
+    private static void filter(String name, long[] keys, long[] absent, int bitsPerKey, boolean print) {
+        long bestBuild = Long.MAX_VALUE, bestHit = Long.MAX_VALUE, bestMiss = Long.MAX_VALUE;
+        MembershipFilter filter = null;
+        long falsePositives = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            if (bitsPerKey > 0) {
+                BlockedBloomFilter bloom = new BlockedBloomFilter(keys.length, bitsPerKey);
+                for (long key : keys)
+                    bloom.add(key);
+                filter = bloom;
+            } else {
+                filter = XorFilter.build(keys);
+            }
+            bestBuild = Math.min(bestBuild, System.nanoTime() - start);
+
+            long found = 0;
+            start = System.nanoTime();
+            for (long key : keys)
+                found += filter.mightContain(key) ? 1 : 0;
+            bestHit = Math.min(bestHit, System.nanoTime() - start);
+            if (found != keys.length)
+                throw new IllegalStateException(name + " has a false negative");
+
+            falsePositives = 0;
+            start = System.nanoTime();
+            for (long key : absent)
+                falsePositives += filter.mightContain(key) ? 1 : 0;
+            bestMiss = Math.min(bestMiss, System.nanoTime() - start);
+        }
+
+        if (print)
+            System.out.printf("  %-10s %10.3f %10.2f %10.1f %10.1f %10.1f%n",
+                    name, 100.0 * falsePositives / absent.length, 8.0 * filter.getSizeInBytes() / keys.length,
+                    bestBuild / 1e6, (double) bestHit / keys.length, (double) bestMiss / absent.length);
+    }
+
+    /**
+     * Times getCastWords hits and misses on a DoubleHashTable and prints one result row.
+     *
+     * @param mode     "none", "bloom" or "xor"
+     * @param capacity the capacity of the table
+     * @param names    the names of the spells to insert
+     * @param misses   names that are never inserted
+     * @param print    whether to print the result row
+     */
+    private static void doubleHashTable(String mode, int capacity, String[] names, String[] misses, boolean print) {
+        DoubleHashTable table = new DoubleHashTable(capacity);
+        for (String name : names)
+            table.put(new SpellSimple(name, name));
+        if (!mode.equals("none"))
+            table.enableFilter(BlockedBloomFilter.DEFAULT_BITS_PER_KEY);
+        if (mode.equals("xor"))
+            table.freezeFilter();
+
+        long bestHit = Long.MAX_VALUE, bestMiss = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String name : names)
+                sink += table.getCastWords(name).length();
+            bestHit = Math.min(bestHit, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (String miss : misses)
+                sink += table.getCastWords(miss) == null ? 1 : 0;
+            bestMiss = Math.min(bestMiss, System.nanoTime() - start);
+        }
+        if (print)
+            System.out.printf("  %-32s %10.1f %10.1f%n", "DoubleHashTable, filter " + mode,
+                    (double) bestHit / names.length, (double) bestMiss / misses.length);
+        if (sink == 42)
+            System.out.println();  // Keeps the lookups from being optimized away
+    }
+
+    /**
+     * Times searchSpell hits and misses on a HashAVLSpellTable and prints one result row.
+     * Half of the misses are unknown names and half are known names with the wrong power level.
+     *
+     * @param mode   "none", "bloom" or "xor"
+     * @param names  the names of the spells to insert
+     * @param misses names that are never inserted
+     * @param print  whether to print the result row
+     */
+    private static void hashAVLSpellTable(String mode, String[] names, String[] misses, boolean print) {
+        HashAVLSpellTable table = new HashAVLSpellTable(101);
+        if (!mode.equals("none"))
+            table.enableFilter(names.length, BlockedBloomFilter.DEFAULT_BITS_PER_KEY);
+        for (int i = 0; i < names.length; i++)
+            table.addSpell(new Spell(names[i], BenchmarkSpells.category(i), i, names[i]));
+        if (mode.equals("xor"))
+            table.freezeFilter();
+
+        long bestHit = Long.MAX_VALUE, bestMiss = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < names.length; i++)
+                sink += table.searchSpell(BenchmarkSpells.category(i), names[i], i).getPowerLevel();
+            bestHit = Math.min(bestHit, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < misses.length; i++) {
+                Spell s = i % 2 == 0
+                        ? table.searchSpell(BenchmarkSpells.category(i), misses[i], i)
+                        : table.searchSpell(BenchmarkSpells.category(i), names[i], -i);
+                sink += s == null ? 1 : 0;
+            }
+            bestMiss = Math.min(bestMiss, System.nanoTime() - start);
+        }
+        if (print)
+            System.out.printf("  %-32s %10.1f %10.1f%n", "HashAVLSpellTable, filter " + mode,
+                    (double) bestHit / names.length, (double) bestMiss / misses.length);
+        if (sink == 42)
+            System.out.println();  // Keeps the lookups from being optimized away
+    }
+}
@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -10,6 +11,12 @@ public class HashAVLSpellTable {
     private LinkedList<AVLTree> buckets[];
     private int tableSize;
     private int numSpells;
+    private int binWidth;
+    private SpellChangeFeed changeFeed;
+    private int watchedTopK;
+    private MembershipFilter filter;
+    private BlockedBloomFilter bloomFilter;
+    private int filterBitsPerKey;
 
     /**
      * Constructs a HashAVLSpellTable with the specified table size.
@@ -17,7 +24,18 @@ public class HashAVLSpellTable {
      * @param size the size of the hash table
      */
     public HashAVLSpellTable(int size) {
+        this(size, PowerHistogram.DEFAULT_BIN_WIDTH);
+    }
+
+    /**
+     * Constructs a HashAVLSpellTable with the specified table size and power level histogram bin width.
+     *
+     * @param size     the size of the hash table
+     * @param binWidth the initial bin width of the per-category power level histograms
+     */
+    public HashAVLSpellTable(int size, int binWidth) {
         tableSize = size;
+        this.binWidth = binWidth;
         buckets = new LinkedList[tableSize];
         for (int i = 0; i < size; i++)
             buckets[i] = new LinkedList<>();
@@ -40,27 +58,75 @@ public class HashAVLSpellTable {
 
     /**
      * Adds a spell to the hash AVL spell table.
+     * A spell whose power level is already taken in its category is not stored, counted or published.
      *
      * @param s the spell to add
+     * @return true if the spell was stored, false if its power level is already taken in its category
      */
-    public void addSpell(Spell s) {
+    public boolean addSpell(Spell s) {
         int index = hash(s.getCategory());
-        if (buckets[index].isEmpty()){
-            AVLTree T1 = new AVLTree(s);
-            buckets[index].add(T1);
-            numSpells++;
-            return;
-        }
+        AVLTree tree = null;
         for (int i = 0; i < buckets[index].size(); i++){
             if (buckets[index].get(i).getCategory().equals(s.getCategory())){
-                buckets[index].get(i).insert(s);
-                numSpells++;
-                return;
+                tree = buckets[index].get(i);
+                if (!tree.insert(s))
+                    return false;
+                break;
             }
         }
-        AVLTree T2=new AVLTree(s);
-        buckets[index].add(T2);
+        if (tree == null){
+            tree = new AVLTree(s, binWidth);
+            buckets[index].add(tree);
+        }
         numSpells++;
+        if (filter != null)
+            addToFilter(s);
+        if (changeFeed != null && changeFeed.hasSubscribers())
+            publishAdd(tree, s);
+        return true;
+    }
+
+    /**
+     * Checks whether a spell with the given power level is in a category, i.e. whether addSpell would refuse
+     * a spell of that category and power level.
+     *
+     * @param category   the category of the spell
+     * @param powerLevel the power level of the spell
+     * @return true if the power level is taken in the category
+     */
+    public boolean hasPowerLevel(String category, int powerLevel) {
+        AVLTree tree = findTree(category);
+        return tree != null && tree.containsPowerLevel(powerLevel);
+    }
+
+    /**
+     * Attaches a change feed that receives an event for every mutation of the table.
+     * Each insert publishes an INSERT event, a TOP_K_CHANGE event if the spell entered the top K of its
+     * category, and a SIZE_CHANGE event. Events are only built while the feed has subscribers.
+     *
+     * @param feed        the feed to publish to, or null to stop publishing
+     * @param watchedTopK the K whose top K membership changes are published
+     */
+    public void setChangeFeed(SpellChangeFeed feed, int watchedTopK) {
+        changeFeed = feed;
+        this.watchedTopK = watchedTopK;
+    }
+
+    /**
+     * Publishes the events of an insert to the change feed.
+     *
+     * @param tree the tree of the spell's category
+     * @param s    the spell that was added
+     */
+    private void publishAdd(AVLTree tree, Spell s) {
+        changeFeed.publish(SpellEvent.insert(s.getCategory(), s.getName(), s.getPowerLevel()));
+        if (watchedTopK > 0) {
+            // After the insert, the spell ranked K + 1 is the one that s pushed out of the top K, if s is stronger
+            Spell next = tree.getKthStrongest(watchedTopK + 1);
+            if (next == null || s.getPowerLevel() > next.getPowerLevel())
+                changeFeed.publish(SpellEvent.topKChange(s, next));
+        }
+        changeFeed.publish(SpellEvent.sizeChange(numSpells));
     }
 
     /**
@@ -72,6 +138,8 @@ public class HashAVLSpellTable {
      * @return the spell if found, null otherwise
      */
     public Spell searchSpell(String category, String spellName, int powerLevel) {
+        if (filter != null && !filter.mightContain(MembershipFilter.hash(category, spellName, powerLevel)))
+            return null;  // Certainly a miss, so the bucket and the tree are skipped
         int index = hash(category);
         for (int i = 0; i < buckets[index].size(); i++){
             if (buckets[index].get(i).getCategory().equals(category)){
@@ -123,4 +191,151 @@ public class HashAVLSpellTable {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves an approximate power level quantile of a specific category, such as 0.5 for the median.
+     *
+     * @param category the category of the spells
+     * @param q        the quantile, between 0 and 1
+     * @return the power level at the quantile, or null if the category does not exist
+     */
+    public Integer quantile(String category, double q) {
+        AVLTree tree = findTree(category);
+        if (tree == null)
+            return null;
+        return tree.getPowerQuantile(q);
+    }
+
+    /**
+     * Retrieves a copy of the power level histogram of a specific category. It does not change when spells are added.
+     *
+     * @param category the category of the spells
+     * @return the histogram of the category, or null if the category does not exist
+     */
+    public PowerHistogram histogram(String category) {
+        AVLTree tree = findTree(category);
+        if (tree == null)
+            return null;
+        return tree.getPowerHistogram();
+    }
+
+    /**
+     * Retrieves a copy of the power level summary of a specific category. It does not change when spells are added.
+     *
+     * @param category the category of the spells
+     * @return the summary of the category, or null if the category does not exist
+     */
+    public PowerSummary getPowerSummary(String category) {
+        AVLTree tree = findTree(category);
+        if (tree == null)
+            return null;
+        return tree.getPowerSummary();
+    }
+
+    /**
+     * Merges the power level summaries of all categories into a new summary.
+     *
+     * @return the summary of all spells in the table
+     */
+    public PowerSummary getPowerSummary() {
+        PowerSummary summary = new PowerSummary(binWidth);
+        for (LinkedList<AVLTree> bucket : buckets) {
+            for (AVLTree tree : bucket)
+                summary.merge(tree.livePowerSummary());  // merge only reads its argument
+        }
+        return summary;
+    }
+
+    /**
+     * Finds the AVL tree holding a specific category.
+     *
+     * @param category the category of the spells
+     * @return the tree of the category, or null if the category does not exist
+     */
+    private AVLTree findTree(String category) {
+        for (AVLTree tree : buckets[hash(category)]) {
+            if (tree.getCategory().equals(category))
+                return tree;
+        }
+        return null;
+    }
+
+    /**
+     * Puts a membership filter keyed on (category, name, power level) in front of searchSpell,
+     * so that most misses skip the bucket and the tree. The filter is a BlockedBloomFilter kept up to date
+     * by addSpell; it is rebuilt twice as large whenever the table outgrows it.
+     *
+     * @param expectedSpells the number of spells to size the filter for
+     * @param bitsPerKey     the number of filter bits per spell, e.g. BlockedBloomFilter.DEFAULT_BITS_PER_KEY
+     */
+    public void enableFilter(int expectedSpells, int bitsPerKey) {
+        filterBitsPerKey = bitsPerKey;
+        bloomFilter = new BlockedBloomFilter(Math.max(expectedSpells, numSpells), bitsPerKey);
+        for (Spell s : allSpells())
+            bloomFilter.add(MembershipFilter.hash(s.getCategory(), s.getName(), s.getPowerLevel()));
+        filter = bloomFilter;
+    }
+
+    /**
+     * Replaces the filter with a static XorFilter of the spells stored now, for a table that is done loading.
+     * It is smaller and has fewer false positives than the Bloom filter. A later addSpell switches back to a
+     * rebuilt Bloom filter, with the bits per key given to enableFilter or DEFAULT_BITS_PER_KEY if it was
+     * never called.
+     */
+    public void freezeFilter() {
+        if (filterBitsPerKey == 0)
+            filterBitsPerKey = BlockedBloomFilter.DEFAULT_BITS_PER_KEY;  // For the Bloom filter a later insert builds
+        List<Spell> spells = allSpells();
+        long[] keys = new long[spells.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Spell s = spells.get(i);
+            keys[i] = MembershipFilter.hash(s.getCategory(), s.getName(), s.getPowerLevel());
+        }
+        filter = XorFilter.build(keys);
+        bloomFilter = null;
+    }
+
+    /**
+     * Removes the filter from the lookup path.
+     */
+    public void disableFilter() {
+        filter = null;
+        bloomFilter = null;
+    }
+
+    /**
+     * Returns the filter in front of searchSpell.
+     *
+     * @return the filter, or null if none is enabled
+     */
+    public MembershipFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Adds a new spell to the filter, rebuilding the filter if it is frozen or full.
+     *
+     * @param s the spell that was added
+     */
+    private void addToFilter(Spell s) {
+        // A frozen filter cannot take new keys and a full one is too small, so rebuild with room for more
+        if (bloomFilter == null || bloomFilter.getCount() >= bloomFilter.getExpectedKeys())
+            enableFilter(2 * numSpells, filterBitsPerKey);
+        else
+            bloomFilter.add(MembershipFilter.hash(s.getCategory(), s.getName(), s.getPowerLevel()));
+    }
+
+    /**
+     * Collects every spell stored in the table.
+     *
+     * @return the spells of all categories
+     */
+    private List<Spell> allSpells() {
+        List<Spell> spells = new ArrayList<>(numSpells);
+        for (LinkedList<AVLTree> bucket : buckets) {
+            for (AVLTree tree : bucket)
+                spells.addAll(tree.getTopK(tree.getSize()));
+        }
+        return spells;
+    }
+}
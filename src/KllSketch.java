@@ -0,0 +1,272 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KllSketch is a mergeable quantile sketch over int values, following Karnin, Lang and Liberty (KLL).
+ * Values are kept in a stack of compactors: an item on level h stands for 2^h values of the stream.
+ * When the sketch grows past its capacity, one full level is sorted and every other item of it is
+ * promoted to the next level, so memory stays O(k) however many values are added.
+ * The rank error of a quantile is roughly 1.7 / k of the number of values with high probability.
+ */
+public class KllSketch {
+    /** The default accuracy parameter, giving a rank error of about 1%. */
+    public static final int DEFAULT_K = 200;
+    private static final double C = 2.0 / 3.0;
+
+    private final int k;
+    private final Random random = new Random();
+    private int[][] levels = new int[1][];
+    private int[] sizes = new int[1];
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    private volatile SortedView sortedView;  // Immutable, so concurrent readers never see it half built
+
+    /**
+     * Constructs an empty KllSketch with the default accuracy.
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Constructs an empty KllSketch.
+     *
+     * @param k the accuracy parameter, the capacity of the top level
+     */
+    public KllSketch(int k) {
+        if (k < 8)
+            throw new IllegalArgumentException("k must be at least 8: " + k);
+        this.k = k;
+        levels[0] = new int[capacity(0)];
+        maxRetained = totalCapacity();
+    }
+
+    /**
+     * Constructs a copy of a KllSketch, which does not change when the original does.
+     *
+     * @param other the sketch to copy
+     */
+    public KllSketch(KllSketch other) {
+        k = other.k;
+        levels = new int[other.levels.length][];
+        for (int h = 0; h < levels.length; h++)
+            levels[h] = other.levels[h].clone();
+        sizes = other.sizes.clone();
+        retained = other.retained;
+        maxRetained = other.maxRetained;
+        count = other.count;
+        min = other.min;
+        max = other.max;
+        sortedView = other.sortedView;
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value the value to add
+     */
+    public void update(int value) {
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sortedView = null;
+        if (retained >= maxRetained)
+            compress();
+    }
+
+    /**
+     * Merges another sketch into this one. The other sketch is not modified.
+     *
+     * @param other the sketch to merge
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0)
+            return;
+        while (levels.length < other.levels.length)
+            addLevel();
+        for (int h = 0; h < other.levels.length; h++) {
+            int size = sizes[h] + other.sizes[h];
+            if (size > levels[h].length)
+                levels[h] = Arrays.copyOf(levels[h], size);
+            System.arraycopy(other.levels[h], 0, levels[h], sizes[h], other.sizes[h]);
+            sizes[h] = size;
+            retained += other.sizes[h];
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sortedView = null;
+        while (retained >= maxRetained)
+            compress();
+    }
+
+    /**
+     * Returns the number of values added to the sketch, including merged ones.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of items the sketch currently retains.
+     *
+     * @return the number of retained items
+     */
+    public int getRetained() {
+        return retained;
+    }
+
+    /**
+     * Returns an approximate quantile of the values added. Quantile 0 and 1 are the exact minimum and maximum.
+     * The sorted view of the retained items is cached until the next update, so repeated queries cost O(log k).
+     * The view is immutable and published whole, so concurrent queries are safe; updates still need exclusive access.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the value at the quantile
+     * @throws IllegalArgumentException if q is out of range
+     * @throws IllegalStateException    if the sketch is empty
+     */
+    public int quantile(double q) {
+        if (q < 0 || q > 1)
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        if (count == 0)
+            throw new IllegalStateException("The sketch is empty");
+        if (q == 0)
+            return min;
+        if (q == 1)
+            return max;
+        SortedView view = sortedView;
+        if (view == null) {
+            view = buildSortedView();
+            sortedView = view;
+        }
+
+        long target = (long) Math.ceil(q * count);
+        int index = Arrays.binarySearch(view.ranks, target);
+        if (index < 0)
+            index = -index - 1;
+        return view.values[Math.min(index, view.values.length - 1)];
+    }
+
+    /**
+     * Returns the capacity of a level; lower levels get geometrically smaller capacities.
+     *
+     * @param h the level
+     * @return the capacity of the level
+     */
+    private int capacity(int h) {
+        int depth = levels.length - h - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(C, depth)));
+    }
+
+    /**
+     * Returns the sum of the capacities of all levels.
+     *
+     * @return the total capacity
+     */
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++)
+            total += capacity(h);
+        return total;
+    }
+
+    /**
+     * Adds an empty level on top of the sketch.
+     */
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        levels[levels.length - 1] = new int[capacity(levels.length - 1)];
+        maxRetained = totalCapacity();
+    }
+
+    /**
+     * Appends an item to a level, growing the level's array if needed.
+     *
+     * @param h     the level
+     * @param value the item
+     */
+    private void append(int h, int value) {
+        if (sizes[h] == levels[h].length)
+            levels[h] = Arrays.copyOf(levels[h], Math.max(2, levels[h].length * 2));
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    /**
+     * Compacts the lowest level that has reached its capacity: it is sorted, and every other item,
+     * starting at a random offset, is promoted to the next level. An odd item out stays behind.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == levels.length)
+                    addLevel();
+                int[] level = levels[h];
+                int size = sizes[h];
+                Arrays.sort(level, 0, size);
+
+                int pairs = size / 2;
+                int offset = random.nextBoolean() ? 1 : 0;
+                int start = size - 2 * pairs;  // Keeps the smallest item behind when size is odd
+                for (int i = 0; i < pairs; i++)
+                    append(h + 1, level[start + 2 * i + offset]);
+                sizes[h] = start;
+                retained -= 2 * pairs;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds the sorted retained items with their cumulative weights.
+     *
+     * @return the sorted view
+     */
+    private SortedView buildSortedView() {
+        long[] packed = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++)
+                packed[n++] = ((long) levels[h][i] << 8) | h;  // Sorting by value carries the level along
+        }
+        Arrays.sort(packed);
+
+        int[] values = new int[n];
+        long[] ranks = new long[n];
+        long rank = 0;
+        for (int i = 0; i < n; i++) {
+            values[i] = (int) (packed[i] >> 8);
+            rank += 1L << (packed[i] & 0xFF);
+            ranks[i] = rank;
+        }
+        return new SortedView(values, ranks);
+    }
+
+    /**
+     * SortedView is the retained items in value order, each with the cumulative weight up to and including it.
+     */
+    private static final class SortedView {
+        private final int[] values;
+        private final long[] ranks;
+
+        /**
+         * Constructs a SortedView.
+         *
+         * @param values the retained items, sorted
+         * @param ranks  the cumulative weights of the items
+         */
+        private SortedView(int[] values, long[] ranks) {
+            this.values = values;
+            this.ranks = ranks;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * MembershipFilter answers "might this key be in the set?" without false negatives.
+ * A false answer means the key was never added, so a lookup can return a miss without touching the table.
+ * Keys are 64-bit hashes made with the static hash methods of this interface.
+ */
+public interface MembershipFilter {
+
+    /**
+     * Returns false if the key was certainly never added, true if it may have been.
+     *
+     * @param key the 64-bit hash of the key
+     * @return true if the key may be in the set
+     */
+    boolean mightContain(long key);
+
+    /**
+     * Returns the memory used by the filter's bits.
+     *
+     * @return the size in bytes
+     */
+    long getSizeInBytes();
+
+    /**
+     * Hashes a spell name to a 64-bit filter key, using FNV-1a over its characters and a final mix.
+     *
+     * @param name the name of the spell
+     * @return the filter key
+     */
+    static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Hashes the (category, name, power level) triple of a spell to a 64-bit filter key.
+     *
+     * @param category   the category of the spell
+     * @param name       the name of the spell
+     * @param powerLevel the power level of the spell
+     * @return the filter key
+     */
+    static long hash(String category, String name, int powerLevel) {
+        return mix(hash(category) ^ Long.rotateLeft(hash(name), 21) ^ (powerLevel * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Spreads the bits of a 64-bit value (the MurmurHash3 finalizer).
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
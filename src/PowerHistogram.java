@@ -0,0 +1,206 @@
+/**
+ * PowerHistogram counts power levels in equal-width bins.
+ * Bin i covers the power levels [i * binWidth, (i + 1) * binWidth). The bins span from the lowest to the
+ * highest non-empty bin; if that span would exceed MAX_BINS, the bin width is doubled and neighbouring
+ * bins are merged, so memory stays bounded whatever the range of power levels.
+ */
+public class PowerHistogram {
+    /** The default bin width, counting every power level separately. */
+    public static final int DEFAULT_BIN_WIDTH = 1;
+    /** The largest number of bins a histogram spans before its bins are widened. */
+    public static final int MAX_BINS = 1 << 12;
+
+    private int binWidth;
+    private long[] counts = new long[0];
+    private long lowestBin;  // The bin of counts[0]
+    private long minBin;
+    private long maxBin;
+    private long total;
+
+    /**
+     * Constructs an empty PowerHistogram.
+     *
+     * @param binWidth the initial width of a bin
+     */
+    public PowerHistogram(int binWidth) {
+        if (binWidth < 1)
+            throw new IllegalArgumentException("Bin width must be positive: " + binWidth);
+        this.binWidth = binWidth;
+    }
+
+    /**
+     * Constructs a copy of a PowerHistogram, which does not change when the original does.
+     *
+     * @param other the histogram to copy
+     */
+    public PowerHistogram(PowerHistogram other) {
+        binWidth = other.binWidth;
+        counts = other.counts.clone();
+        lowestBin = other.lowestBin;
+        minBin = other.minBin;
+        maxBin = other.maxBin;
+        total = other.total;
+    }
+
+    /**
+     * Counts one power level.
+     *
+     * @param powerLevel the power level to count
+     */
+    public void add(int powerLevel) {
+        addToBin(Math.floorDiv(powerLevel, binWidth));
+    }
+
+    /**
+     * Adds the counts of another histogram to this one. The other histogram is not modified.
+     * The bins of the result have the larger of the two bin widths.
+     *
+     * @param other the histogram to merge
+     * @throws IllegalArgumentException if one bin width is not a power of two multiple of the other
+     */
+    public void merge(PowerHistogram other) {
+        if (other.total == 0)
+            return;
+        int wide = Math.max(binWidth, other.binWidth);
+        int narrow = Math.min(binWidth, other.binWidth);
+        if (wide % narrow != 0 || Integer.bitCount(wide / narrow) != 1)
+            throw new IllegalArgumentException("Incompatible bin widths: " + binWidth + " and " + other.binWidth);
+        while (binWidth < other.binWidth) {
+            if (total > 0)
+                coarsen();
+            else
+                binWidth *= 2;
+        }
+
+        long ratio = binWidth / other.binWidth;
+        long low = Math.floorDiv(other.minBin, ratio);
+        long high = Math.floorDiv(other.maxBin, ratio);
+        if (total == 0)
+            reset(low);
+        while (Math.max(maxBin, high) - Math.min(minBin, low) + 1 > MAX_BINS) {
+            coarsen();
+            ratio *= 2;
+            low = Math.floorDiv(low, 2);
+            high = Math.floorDiv(high, 2);
+        }
+        ensureRange(low, high);
+        for (long bin = other.minBin; bin <= other.maxBin; bin++)
+            counts[(int) (Math.floorDiv(bin, ratio) - lowestBin)] += other.counts[(int) (bin - other.lowestBin)];
+        total += other.total;
+    }
+
+    /**
+     * Returns the current width of a bin.
+     *
+     * @return the bin width
+     */
+    public int getBinWidth() {
+        return binWidth;
+    }
+
+    /**
+     * Returns the number of power levels counted.
+     *
+     * @return the total count
+     */
+    public long getTotalCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of bins from the lowest to the highest non-empty bin.
+     *
+     * @return the number of bins, or 0 if the histogram is empty
+     */
+    public int getNumberBins() {
+        return total == 0 ? 0 : (int) (maxBin - minBin + 1);
+    }
+
+    /**
+     * Returns the lowest power level covered by a bin.
+     *
+     * @param i the index of the bin, from 0 to getNumberBins() - 1
+     * @return the lowest power level of the bin
+     */
+    public long getBinStart(int i) {
+        return (minBin + i) * binWidth;
+    }
+
+    /**
+     * Returns the number of power levels counted in a bin.
+     *
+     * @param i the index of the bin, from 0 to getNumberBins() - 1
+     * @return the count of the bin
+     */
+    public long getBinCount(int i) {
+        return counts[(int) (minBin - lowestBin) + i];
+    }
+
+    /**
+     * Counts one power level in a bin, widening the bins first if the bin falls too far from the others.
+     *
+     * @param bin the bin, at the current bin width
+     */
+    private void addToBin(long bin) {
+        if (total == 0)
+            reset(bin);
+        while (Math.max(maxBin, bin) - Math.min(minBin, bin) + 1 > MAX_BINS) {
+            coarsen();
+            bin = Math.floorDiv(bin, 2);
+        }
+        ensureRange(bin, bin);
+        counts[(int) (bin - lowestBin)]++;
+        total++;
+    }
+
+    /**
+     * Starts an empty histogram around the given bin.
+     *
+     * @param bin the first bin
+     */
+    private void reset(long bin) {
+        counts = new long[8];
+        lowestBin = bin;
+        minBin = bin;
+        maxBin = bin;
+    }
+
+    /**
+     * Makes the bins span the given range, reallocating the counts with room to grow further in
+     * the direction they were extended. The range must not make the span exceed MAX_BINS.
+     *
+     * @param low  the lowest bin that must fit
+     * @param high the highest bin that must fit
+     */
+    private void ensureRange(long low, long high) {
+        if (low < lowestBin || high >= lowestBin + counts.length) {
+            long from = Math.min(minBin, low);
+            long to = Math.max(maxBin, high);
+            int length = (int) Math.min(MAX_BINS, Math.max(to - from + 1, 2L * counts.length));
+            long newLowest = low < lowestBin ? to - length + 1 : from;
+
+            long[] grown = new long[length];
+            System.arraycopy(counts, (int) (minBin - lowestBin), grown, (int) (minBin - newLowest),
+                    (int) (maxBin - minBin + 1));
+            counts = grown;
+            lowestBin = newLowest;
+        }
+        minBin = Math.min(minBin, low);
+        maxBin = Math.max(maxBin, high);
+    }
+
+    /**
+     * Doubles the bin width, merging every pair of neighbouring bins.
+     */
+    private void coarsen() {
+        long newLowest = Math.floorDiv(minBin, 2);
+        long[] coarse = new long[counts.length];
+        for (long b = minBin; b <= maxBin; b++)
+            coarse[(int) (Math.floorDiv(b, 2) - newLowest)] += counts[(int) (b - lowestBin)];
+        counts = coarse;
+        lowestBin = newLowest;
+        minBin = newLowest;
+        maxBin = Math.floorDiv(maxBin, 2);
+        binWidth *= 2;
+    }
+}
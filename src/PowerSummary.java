@@ -0,0 +1,84 @@
+/**
+ * PowerSummary summarizes the power levels of a set of spells with a PowerHistogram and a KllSketch.
+ * Both are updated in O(1) amortized time per spell and can be merged, so the summary of several
+ * categories is the merge of their summaries.
+ */
+public class PowerSummary {
+    private final PowerHistogram histogram;
+    private final KllSketch sketch;
+
+    /**
+     * Constructs an empty PowerSummary with the default histogram bin width.
+     */
+    public PowerSummary() {
+        this(PowerHistogram.DEFAULT_BIN_WIDTH);
+    }
+
+    /**
+     * Constructs an empty PowerSummary.
+     *
+     * @param binWidth the initial width of a histogram bin
+     */
+    public PowerSummary(int binWidth) {
+        histogram = new PowerHistogram(binWidth);
+        sketch = new KllSketch();
+    }
+
+    /**
+     * Constructs a copy of a PowerSummary, which does not change when the original does.
+     *
+     * @param other the summary to copy
+     */
+    public PowerSummary(PowerSummary other) {
+        histogram = new PowerHistogram(other.histogram);
+        sketch = new KllSketch(other.sketch);
+    }
+
+    /**
+     * Adds the power level of a spell to the summary.
+     *
+     * @param powerLevel the power level to add
+     */
+    public void add(int powerLevel) {
+        histogram.add(powerLevel);
+        sketch.update(powerLevel);
+    }
+
+    /**
+     * Merges another summary into this one. The other summary is not modified.
+     *
+     * @param other the summary to merge
+     */
+    public void merge(PowerSummary other) {
+        histogram.merge(other.histogram);
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * Returns the number of power levels summarized.
+     *
+     * @return the number of power levels
+     */
+    public long getCount() {
+        return sketch.getCount();
+    }
+
+    /**
+     * Returns an approximate quantile of the power levels.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the power level at the quantile
+     */
+    public int quantile(double q) {
+        return sketch.quantile(q);
+    }
+
+    /**
+     * Returns a copy of the histogram of the power levels. It does not change when power levels are added.
+     *
+     * @return the histogram
+     */
+    public PowerHistogram getHistogram() {
+        return new PowerHistogram(histogram);
+    }
+}
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * PowerSummaryBenchmark measures the accuracy and the cost of the power level summaries.
+ * Accuracy is the rank error of KllSketch quantiles against the exact quantiles, for a single sketch
+ * and for sketches merged across categories. Cost is the time per update of the histogram, the sketch
+ * and a whole addSpell, and the time of a quantile query against a full getTopK materialization.
+ */
+public class PowerSummaryBenchmark {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Runs the benchmark.
+     * Usage: PowerSummaryBenchmark [values]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        SplittableRandom random = new SplittableRandom(7);
+
+        System.out.println("Accuracy, " + n + " values, k = " + KllSketch.DEFAULT_K);
+        accuracy("uniform", n, () -> random.nextInt(10000));
+        accuracy("normal", n, () -> (int) Math.round(500 + 100 * gaussian(random)));
+        accuracy("exponential", n, () -> (int) (-1000 * Math.log(1 - random.nextDouble())));
+        mergedAccuracy(n, random);
+
+        System.out.println();
+        System.out.println("Update cost, " + n + " values");
+        updateCost(n, random);
+
+        System.out.println();
+        System.out.println("Query cost, " + n + " spells in " + BenchmarkSpells.CATEGORIES + " categories");
+        queryCost(n);
+    }
+
+    /**
+     * Supplies power levels drawn from a distribution.
+     */
+    private interface Distribution {
+        int next();
+    }
+
+    /**
+     * Feeds one sketch with values from a distribution and prints its rank error at each quantile.
+     *
+     * @param name         the name of the distribution
+     * @param n            the number of values
+     * @param distribution the distribution
+     */
+    private static void accuracy(String name, int n, Distribution distribution) {
+        int[] values = new int[n];
+        PowerSummary summary = new PowerSummary();
+        for (int i = 0; i < n; i++) {
+            values[i] = distribution.next();
+            summary.add(values[i]);
+        }
+        Arrays.sort(values);
+        printErrors(name, summary, values);
+    }
+
+    /**
+     * Feeds one sketch per category, merges them and prints the rank error of the merged sketch.
+     *
+     * @param n      the number of values
+     * @param random the random source
+     */
+    private static void mergedAccuracy(int n, SplittableRandom random) {
+        int[] values = new int[n];
+        PowerSummary[] categories = new PowerSummary[BenchmarkSpells.CATEGORIES];
+        for (int c = 0; c < BenchmarkSpells.CATEGORIES; c++)
+            categories[c] = new PowerSummary();
+        for (int i = 0; i < n; i++) {
+            int c = i % BenchmarkSpells.CATEGORIES;
+            values[i] = c * 100 + random.nextInt(5000);  // Every category has its own offset
+            categories[c].add(values[i]);
+        }
+
+        PowerSummary merged = null;
+        long elapsed = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {  // The best round is printed, once the JIT has warmed up
+            long start = System.nanoTime();
+            merged = new PowerSummary();
+            for (PowerSummary s : categories)
+                merged.merge(s);
+            elapsed = Math.min(elapsed, System.nanoTime() - start);
+        }
+
+        Arrays.sort(values);
+        printErrors("merged x" + BenchmarkSpells.CATEGORIES, merged, values);
+        System.out.printf("  merging %d summaries took %.1f us%n", BenchmarkSpells.CATEGORIES, elapsed / 1e3);
+    }
+
+    /**
+     * Prints the estimated and exact quantiles of a summary and their normalized rank error.
+     *
+     * @param name    the name of the data set
+     * @param summary the summary to check
+     * @param sorted  the exact values, sorted
+     */
+    private static void printErrors(String name, PowerSummary summary, int[] sorted) {
+        StringBuilder line = new StringBuilder(String.format("  %-14s", name));
+        for (double q : QUANTILES) {
+            int estimate = summary.quantile(q);
+            int exact = sorted[(int) Math.ceil(q * sorted.length) - 1];
+            line.append(String.format("  p%s %d/%d err %.4f%%", trim(q * 100), estimate, exact,
+                    100.0 * rankError(sorted, estimate, q)));
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Returns how far, as a fraction of all values, the ranks of a value are from the target quantile.
+     *
+     * @param sorted the exact values, sorted
+     * @param value  the estimated quantile
+     * @param q      the target quantile
+     * @return the normalized rank error
+     */
+    private static double rankError(int[] sorted, int value, double q) {
+        long target = (long) Math.ceil(q * sorted.length);
+        long below = lowerBound(sorted, value);
+        long upTo = lowerBound(sorted, value + 1L);
+        if (target <= below)
+            return (double) (below + 1 - target) / sorted.length;
+        if (target > upTo)
+            return (double) (target - upTo) / sorted.length;
+        return 0;
+    }
+
+    /**
+     * Returns the number of values strictly less than a bound.
+     *
+     * @param sorted the values, sorted
+     * @param bound  the bound
+     * @return the number of values below the bound
+     */
+    private static int lowerBound(int[] sorted, long bound) {
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < bound)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Prints the time per update of a histogram, a sketch, a summary and a whole addSpell.
+     *
+     * @param n      the number of values
+     * @param random the random source
+     */
+    private static void updateCost(int n, SplittableRandom random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+            values[i] = random.nextInt(10000);
+
+        for (int round = 0; round < 3; round++) {  // The last round is printed, once the JIT has warmed up
+            PowerHistogram histogram = new PowerHistogram(PowerHistogram.DEFAULT_BIN_WIDTH);
+            long start = System.nanoTime();
+            for (int v : values)
+                histogram.add(v);
+            long histogramTime = System.nanoTime() - start;
+
+            KllSketch sketch = new KllSketch();
+            start = System.nanoTime();
+            for (int v : values)
+                sketch.update(v);
+            long sketchTime = System.nanoTime() - start;
+
+            PowerSummary summary = new PowerSummary();
+            start = System.nanoTime();
+            for (int v : values)
+                summary.add(v);
+            long summaryTime = System.nanoTime() - start;
+
+            HashAVLSpellTable table = new HashAVLSpellTable(101);
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                table.addSpell(BenchmarkSpells.spell(i));
+            long addTime = System.nanoTime() - start;
+
+            if (round == 2) {
+                System.out.printf("  PowerHistogram.add   %8.1f ns%n", (double) histogramTime / n);
+                System.out.printf("  KllSketch.update     %8.1f ns (%d items retained)%n",
+                        (double) sketchTime / n, sketch.getRetained());
+                System.out.printf("  PowerSummary.add     %8.1f ns%n", (double) summaryTime / n);
+                System.out.printf("  addSpell             %8.1f ns (includes PowerSummary.add)%n",
+                        (double) addTime / n);
+            }
+        }
+    }
+
+    /**
+     * Prints the time of a median query from the sketch against a median from a full getTopK.
+     *
+     * @param n the number of spells
+     */
+    private static void queryCost(int n) {
+        HashAVLSpellTable table = new HashAVLSpellTable(101);
+        for (int i = 0; i < n; i++)
+            table.addSpell(BenchmarkSpells.spell(i));
+        String category = "category-0";
+        int size = table.getNumberSpells(category);
+
+        long sink = 0;
+        int queries = 1000;
+        long quantileTime = 0, topKTime = 0, summaryTime = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < queries; i++)
+                sink += table.quantile(category, 0.5);
+            quantileTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < queries / 100; i++) {
+                List<Spell> all = table.getTopK(category, size);
+                sink += all.get(all.size() / 2).getPowerLevel();
+            }
+            topKTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < queries / 100; i++)
+                sink += table.getPowerSummary().quantile(0.9);
+            summaryTime = System.nanoTime() - start;
+        }
+        System.out.printf("  quantile(category, 0.5)       %12.1f ns%n", (double) quantileTime / queries);
+        System.out.printf("  getTopK(category, %d) median %12.1f ns%n", size, (double) topKTime / (queries / 100));
+        System.out.printf("  getPowerSummary() p90        %12.1f ns (merges %d categories)%n",
+                (double) summaryTime / (queries / 100), BenchmarkSpells.CATEGORIES);
+        if (sink == 42)
+            System.out.println();  // Keeps the queries from being optimized away
+    }
+
+
+    /**
+     * Returns a standard normal value using the Box-Muller transform.
+     *
+     * @param random the random source
+     * @return the normal value
+     */
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    /**
+     * Formats a percentage without a trailing ".0".
+     *
+     * @param percent the percentage
+     * @return the formatted percentage
+     */
+    private static String trim(double percent) {
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+    }
+}
@@ -49,6 +49,15 @@ public class Spell {
         return powerLevel;
     }
 
+    /**
+     * Returns the words required to cast the spell.
+     *
+     * @return the words of the spell
+     */
+    public String getWords() {
+        return words;
+    }
+
     /**
      * Returns a string representation of the spell.
      *
@@ -0,0 +1,341 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SpellChangeFeed is a lock-free ring buffer of SpellEvents, in the style of the LMAX Disruptor.
+ * A single writer publishes events, and every subscriber reads them on its own thread with its own cursor,
+ * taking all available events as one batch. What the writer does when the ring is full is set by the
+ * OverflowPolicy. A side that has to wait spins briefly and then parks until the other side signals it,
+ * so an idle feed uses no CPU. A signal is only sent when the other side has announced that it is parked.
+ * Tables that share a feed must not publish concurrently; their writes must be serialized, e.g. by a lock.
+ */
+public class SpellChangeFeed {
+
+    /**
+     * What the writer does when the slowest subscriber is a whole ring behind.
+     */
+    public enum OverflowPolicy {
+        /** The writer waits for the slowest subscriber: no event is lost, but writes may stall. */
+        BLOCK,
+        /**
+         * The writer discards the new event: writes never stall, and the next published event tells subscribers
+         * how many events were dropped just before it.
+         */
+        DROP_NEWEST,
+        /** The writer overwrites the oldest event: writes never stall, and lagging subscribers skip ahead. */
+        OVERWRITE_OLDEST
+    }
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(SpellEvent[].class);
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 10;
+
+    private final SpellEvent[] slots;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private long next = 0;
+    private long cachedGate = -1;
+    private long pendingDrops;  // Events dropped since the last published event
+    private volatile long dropped;
+    private volatile Thread writer;
+    private volatile boolean writerWaiting;
+
+    /**
+     * Constructs a SpellChangeFeed.
+     *
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     * @param policy   what to do when the ring is full
+     */
+    public SpellChangeFeed(int capacity, OverflowPolicy policy) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        slots = new SpellEvent[size];
+        mask = size - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns true if at least one subscriber is listening, so that tables can skip building events.
+     *
+     * @return true if the feed has subscribers
+     */
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    /**
+     * Publishes an event. Must only be called by one thread at a time.
+     *
+     * @param event the event to publish
+     * @return true if the event was published, false if it was dropped because the ring is full
+     */
+    public boolean publish(SpellEvent event) {
+        long sequence = next;
+        long wrapPoint = sequence - slots.length;
+        if (policy != OverflowPolicy.OVERWRITE_OLDEST && wrapPoint > cachedGate) {
+            cachedGate = slowestSubscriber(sequence - 1);
+            if (wrapPoint > cachedGate) {
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    dropped++;
+                    pendingDrops++;
+                    return false;
+                }
+                cachedGate = awaitSubscribers(wrapPoint, sequence - 1);
+            }
+        }
+        event.setSequence(sequence);
+        event.setDroppedBefore(pendingDrops);
+        pendingDrops = 0;
+        SLOTS.setRelease(slots, (int) (sequence & mask), event);
+        next = sequence + 1;
+        cursor.set(sequence);  // A full fence, so a subscriber about to park either sees the event or is woken
+        for (Subscription s : subscriptions) {
+            if (s.waiting)
+                LockSupport.unpark(s.thread);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the slowest subscriber has consumed past the wrap point, parking after a short spin.
+     *
+     * @param wrapPoint    the sequence number every subscriber must have consumed
+     * @param defaultValue the value to return when there are no subscribers
+     * @return the lowest subscriber cursor
+     */
+    private long awaitSubscribers(long wrapPoint, long defaultValue) {
+        long gate = slowestSubscriber(defaultValue);
+        for (int spins = 0; wrapPoint > gate; spins++) {
+            if (spins < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                writer = Thread.currentThread();
+                writerWaiting = true;
+                if (wrapPoint > slowestSubscriber(defaultValue))
+                    LockSupport.park(this);
+                writerWaiting = false;
+            }
+            gate = slowestSubscriber(defaultValue);
+        }
+        return gate;
+    }
+
+    /**
+     * Wakes the writer if it is parked waiting for subscribers to make room.
+     */
+    private void signalWriter() {
+        if (writerWaiting)
+            LockSupport.unpark(writer);
+    }
+
+    /**
+     * Returns the number of events the writer discarded under the DROP_NEWEST policy.
+     *
+     * @return the number of dropped events
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the sequence number of the last published event.
+     *
+     * @return the sequence number, or -1 if nothing was published
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Subscribes a listener to the events published from now on. The listener runs on a new virtual thread.
+     *
+     * @param listener the listener to call for every event
+     * @return the subscription, which must be closed to stop listening
+     */
+    public synchronized Subscription subscribe(SpellEventListener listener) {
+        Subscription subscription = new Subscription(listener, cursor.get());
+        Subscription[] grown = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        grown[grown.length - 1] = subscription;
+        subscriptions = grown;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription from the feed.
+     *
+     * @param subscription the subscription to remove
+     */
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscriptions = Arrays.stream(subscriptions).filter(s -> s != subscription).toArray(Subscription[]::new);
+        signalWriter();  // A writer blocked on this subscriber can go on
+    }
+
+    /**
+     * Returns the sequence number up to which every subscriber has consumed.
+     *
+     * @param defaultValue the value to return when there are no subscribers
+     * @return the lowest subscriber cursor
+     */
+    private long slowestSubscriber(long defaultValue) {
+        long min = defaultValue;
+        for (Subscription s : subscriptions)
+            min = Math.min(min, s.sequence.get());
+        return min;
+    }
+
+    /**
+     * Subscription is one listener reading the feed with its own cursor on its own thread.
+     */
+    public class Subscription implements AutoCloseable {
+        private final SpellEventListener listener;
+        private final AtomicLong sequence;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile long missed;
+        private volatile boolean waiting;
+        private volatile long dropped;
+        private volatile Throwable failure;
+
+        /**
+         * Constructs a Subscription positioned after the given sequence number.
+         *
+         * @param listener the listener to call for every event
+         * @param start    the sequence number of the last event the subscriber will not see
+         */
+        private Subscription(SpellEventListener listener, long start) {
+            this.listener = listener;
+            sequence = new AtomicLong(start);
+            thread = Thread.ofVirtual().name("spell-change-feed").unstarted(this::run);
+        }
+
+        /**
+         * Returns the sequence number of the last event this subscriber consumed.
+         *
+         * @return the sequence number
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Returns the number of events this subscriber skipped because they were overwritten before it
+         * read them, which only happens under the OVERWRITE_OLDEST policy.
+         *
+         * @return the number of missed events
+         */
+        public long getMissed() {
+            return missed;
+        }
+
+        /**
+         * Returns the number of events dropped under the DROP_NEWEST policy just before events this subscriber read,
+         * i.e. the gaps it has seen. Drops after the last event it read show up with the next event.
+         *
+         * @return the number of dropped events
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * Returns the exception thrown by the listener, which ended the subscription.
+         *
+         * @return the exception, or null if the listener never threw
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * Stops the subscription and waits for its thread to finish the current batch.
+         * When called by the listener itself, the subscription stops after the current event instead.
+         */
+        @Override
+        public void close() {
+            running = false;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() == thread)
+                return;  // Joining its own thread would never return
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Reads batches of events until closed. A listener that throws ends the subscription, which records the
+         * exception and is removed from the feed so that it can no longer hold the writer back.
+         */
+        private void run() {
+            try {
+                long nextSequence = sequence.get() + 1;
+                while (running) {
+                    long available = awaitEvents(nextSequence);
+                    if (available < nextSequence)
+                        break;  // Closed while waiting
+                    long oldest = available - slots.length + 1;
+                    if (nextSequence < oldest) {
+                        missed += oldest - nextSequence;
+                        nextSequence = oldest;
+                    }
+
+                    long s = nextSequence;
+                    for (; s <= available && running; s++) {
+                        SpellEvent event = (SpellEvent) SLOTS.getAcquire(slots, (int) (s & mask));
+                        if (event.getSequence() != s)
+                            break;  // Overwritten while reading the batch, so skip ahead on the next pass
+                        if (event.getDroppedBefore() != 0)
+                            dropped += event.getDroppedBefore();
+                        listener.onEvent(event, s == available);
+                    }
+                    nextSequence = s;
+                    sequence.set(s - 1);  // A full fence, so a writer about to park either sees the room or is woken
+                    signalWriter();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } catch (Error e) {
+                failure = e;
+                throw e;
+            } finally {
+                running = false;
+                unsubscribe(this);
+            }
+        }
+
+        /**
+         * Waits until an event at or after the given sequence number is published or the subscription is closed,
+         * spinning and yielding briefly before parking until the writer signals.
+         *
+         * @param nextSequence the sequence number of the next event to read
+         * @return the sequence number of the last published event
+         */
+        private long awaitEvents(long nextSequence) {
+            long available;
+            for (int tries = 0; (available = cursor.get()) < nextSequence && running; tries++) {
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    waiting = true;
+                    if (cursor.get() < nextSequence && running)
+                        LockSupport.park(this);
+                    waiting = false;
+                }
+            }
+            return available;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * SpellEvent is a single mutation of a spell table, as published on a SpellChangeFeed.
+ * Events are immutable once published and carry the sequence number the feed assigned to them.
+ */
+public class SpellEvent {
+
+    /**
+     * The kinds of mutation a table publishes.
+     */
+    public enum Type {
+        /** A spell was inserted. */
+        INSERT,
+        /** A spell entered the watched top K of its category, possibly displacing another one. */
+        TOP_K_CHANGE,
+        /** The number of spells in the table changed. */
+        SIZE_CHANGE
+    }
+
+    private final Type type;
+    private final String category;
+    private final String name;
+    private final int powerLevel;
+    private final String displacedName;
+    private final int displacedPowerLevel;
+    private final int size;
+    private long sequence = -1;
+    private long droppedBefore;
+
+    /**
+     * Constructs a SpellEvent. Use the static factory methods instead.
+     */
+    private SpellEvent(Type type, String category, String name, int powerLevel,
+                       String displacedName, int displacedPowerLevel, int size) {
+        this.type = type;
+        this.category = category;
+        this.name = name;
+        this.powerLevel = powerLevel;
+        this.displacedName = displacedName;
+        this.displacedPowerLevel = displacedPowerLevel;
+        this.size = size;
+    }
+
+    /**
+     * Creates an INSERT event.
+     *
+     * @param category   the category of the spell, or null for a table without categories
+     * @param name       the name of the spell
+     * @param powerLevel the power level of the spell, or 0 for a table without power levels
+     * @return the event
+     */
+    public static SpellEvent insert(String category, String name, int powerLevel) {
+        return new SpellEvent(Type.INSERT, category, name, powerLevel, null, 0, 0);
+    }
+
+    /**
+     * Creates a TOP_K_CHANGE event.
+     *
+     * @param entered   the spell that entered the top K of its category
+     * @param displaced the spell that dropped out of the top K, or null if the top K was not full
+     * @return the event
+     */
+    public static SpellEvent topKChange(Spell entered, Spell displaced) {
+        return new SpellEvent(Type.TOP_K_CHANGE, entered.getCategory(), entered.getName(), entered.getPowerLevel(),
+                displaced == null ? null : displaced.getName(), displaced == null ? 0 : displaced.getPowerLevel(), 0);
+    }
+
+    /**
+     * Creates a SIZE_CHANGE event.
+     *
+     * @param size the new number of spells in the table
+     * @return the event
+     */
+    public static SpellEvent sizeChange(int size) {
+        return new SpellEvent(Type.SIZE_CHANGE, null, null, 0, null, 0, size);
+    }
+
+    /**
+     * Returns the kind of mutation.
+     *
+     * @return the type of the event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the position of the event in its feed, starting at 0.
+     *
+     * @return the sequence number, or -1 if the event was not published
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of events the feed dropped under the DROP_NEWEST policy between the previous published
+     * event and this one. A nonzero value is a gap: a subscriber keeping a copy of the table should resynchronize.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedBefore() {
+        return droppedBefore;
+    }
+
+    /**
+     * Returns the category of the spell, for INSERT and TOP_K_CHANGE events of categorized tables.
+     *
+     * @return the category, or null
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the name of the inserted spell, or of the spell that entered the top K.
+     *
+     * @return the name, or null for SIZE_CHANGE events
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the power level of the inserted spell, or of the spell that entered the top K.
+     *
+     * @return the power level
+     */
+    public int getPowerLevel() {
+        return powerLevel;
+    }
+
+    /**
+     * Returns the name of the spell that dropped out of the top K in a TOP_K_CHANGE event.
+     *
+     * @return the name, or null if no spell dropped out
+     */
+    public String getDisplacedName() {
+        return displacedName;
+    }
+
+    /**
+     * Returns the power level of the spell that dropped out of the top K in a TOP_K_CHANGE event.
+     *
+     * @return the power level
+     */
+    public int getDisplacedPowerLevel() {
+        return displacedPowerLevel;
+    }
+
+    /**
+     * Returns the new number of spells in the table, for SIZE_CHANGE events.
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Assigns the sequence number. Called once by the feed, before the event becomes visible.
+     *
+     * @param sequence the sequence number
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Records the number of events dropped just before this one. Called once by the feed, before the event
+     * becomes visible.
+     *
+     * @param droppedBefore the number of dropped events
+     */
+    void setDroppedBefore(long droppedBefore) {
+        this.droppedBefore = droppedBefore;
+    }
+
+    /**
+     * Returns a string representation of the event.
+     *
+     * @return a string representation of the event
+     */
+    @Override
+    public String toString() {
+        switch (type) {
+            case INSERT:
+                return "#" + sequence + " INSERT " + name + (category == null ? "" : " (" + category + ")");
+            case TOP_K_CHANGE:
+                return "#" + sequence + " TOP_K_CHANGE " + category + ": " + name + " in"
+                        + (displacedName == null ? "" : ", " + displacedName + " out");
+            default:
+                return "#" + sequence + " SIZE_CHANGE " + size;
+        }
+    }
+}
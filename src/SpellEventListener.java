@@ -0,0 +1,14 @@
+/**
+ * SpellEventListener receives the events of a SpellChangeFeed subscription.
+ * It is called on the subscription's own thread, never on the thread writing to the table.
+ */
+public interface SpellEventListener {
+
+    /**
+     * Handles one event. Events arrive in sequence order, in batches of every event available at once.
+     *
+     * @param event      the event
+     * @param endOfBatch true if this is the last event of the current batch, a good point to flush work
+     */
+    void onEvent(SpellEvent event, boolean endOfBatch);
+}
@@ -0,0 +1,268 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SpellLoadGenerator drives a local SpellServer with many concurrent connections and reports
+ * the request throughput and the p50 / p99 / p999 request latency.
+ * Each connection runs on its own virtual thread and pipelines requests in windows: it writes
+ * a window of requests, flushes once, then reads the matching responses. The latency of a request
+ * is measured from the flush of its window to the arrival of its response.
+ */
+public class SpellLoadGenerator {
+    private static final int TOP_K = 10;
+
+    private final int port;
+    private final int connections;
+    private final int requestsPerConnection;
+    private final int pipelineDepth;
+    private final int catalogSize;
+
+    /**
+     * Constructs a SpellLoadGenerator.
+     *
+     * @param port                  the loopback port of the server
+     * @param connections           the number of concurrent connections
+     * @param requestsPerConnection the number of requests sent on each connection
+     * @param pipelineDepth         the number of requests in flight on a connection
+     * @param catalogSize           the number of spells loaded before the measurement
+     */
+    public SpellLoadGenerator(int port, int connections, int requestsPerConnection, int pipelineDepth, int catalogSize) {
+        this.port = port;
+        this.connections = connections;
+        this.requestsPerConnection = requestsPerConnection;
+        this.pipelineDepth = pipelineDepth;
+        this.catalogSize = catalogSize;
+    }
+
+    /**
+     * Returns the i-th spell of the catalog. Power levels are unique so every spell can be found again.
+     *
+     * @param i the index of the spell
+     * @return the spell
+     */
+    private static Spell catalogSpell(int i) {
+        return new Spell("spell-" + i, BenchmarkSpells.category(i), i, "words-" + i);
+    }
+
+    /**
+     * Loads the catalog into the server over a single pipelined connection.
+     *
+     * @throws IOException if the connection fails
+     */
+    public void loadCatalog() throws IOException {
+        try (Connection c = new Connection(port)) {
+            for (int start = 0; start < catalogSize; start += pipelineDepth) {
+                int end = Math.min(catalogSize, start + pipelineDepth);
+                for (int i = start; i < end; i++)
+                    c.send(SpellProtocol.addSpell(catalogSpell(i)));
+                c.flush();
+                for (int i = start; i < end; i++)
+                    c.expectStatus(SpellProtocol.OK);
+            }
+        }
+    }
+
+    /**
+     * Opens all connections, runs the read workload on every one of them at once and prints the results.
+     *
+     * @throws Exception if a connection fails
+     */
+    public void run() throws Exception {
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>(connections);
+
+        long elapsed;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                long seed = i;
+                results.add(clients.submit(() -> {
+                    Connection c;
+                    try {
+                        c = new Connection(port);
+                    } finally {
+                        connected.countDown();  // Also counted when connecting failed, so the latch is released
+                    }
+                    try (c) {
+                        start.await();
+                        return runConnection(c, new SplittableRandom(seed));
+                    }
+                }));
+            }
+            connected.await();
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<long[]> f : results)
+                f.get();
+            elapsed = System.nanoTime() - begin;
+        }
+
+        long[] latencies = new long[connections * requestsPerConnection];
+        int n = 0;
+        for (Future<long[]> f : results) {
+            long[] l = f.get();
+            System.arraycopy(l, 0, latencies, n, l.length);
+            n += l.length;
+        }
+        Arrays.sort(latencies);
+
+        System.out.println("Connections: " + connections + ", requests per connection: " + requestsPerConnection
+                + ", pipeline depth: " + pipelineDepth + ", catalog size: " + catalogSize);
+        System.out.printf("Requests: %d in %.3f s, throughput: %.0f req/s%n",
+                latencies.length, elapsed / 1e9, latencies.length / (elapsed / 1e9));
+        System.out.printf("Latency p50: %.1f us, p99: %.1f us, p999: %.1f us, max: %.1f us%n",
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3, latencies[latencies.length - 1] / 1e3);
+    }
+
+    /**
+     * Runs the read workload on one connection: 40% getCastWords, 40% searchSpell and 20% getTopK,
+     * with one lookup in ten aimed at a spell that does not exist.
+     *
+     * @param c      the connection to use
+     * @param random the random source of this connection
+     * @return the latency of every request in nanoseconds
+     * @throws IOException if the connection fails
+     */
+    private long[] runConnection(Connection c, SplittableRandom random) throws IOException {
+        long[] latencies = new long[requestsPerConnection];
+        for (int start = 0; start < requestsPerConnection; start += pipelineDepth) {
+            int end = Math.min(requestsPerConnection, start + pipelineDepth);
+            for (int i = start; i < end; i++) {
+                int id = random.nextInt(10) == 0 ? catalogSize + random.nextInt(catalogSize) : random.nextInt(catalogSize);
+                int op = random.nextInt(5);
+                if (op < 2)
+                    c.send(SpellProtocol.getCastWords("spell-" + id));
+                else if (op < 4)
+                    c.send(SpellProtocol.searchSpell(BenchmarkSpells.category(id), "spell-" + id, id));
+                else
+                    c.send(SpellProtocol.getTopK(BenchmarkSpells.category(id), TOP_K));
+            }
+            long sent = System.nanoTime();
+            c.flush();
+            for (int i = start; i < end; i++) {
+                c.receive();
+                latencies[i] = System.nanoTime() - sent;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Returns the value at the given quantile of a sorted array.
+     *
+     * @param sorted the sorted values
+     * @param q      the quantile, between 0 and 1
+     * @return the value at the quantile
+     */
+    private static long percentile(long[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Connection is a single client connection to the server.
+     */
+    private static class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * Opens a connection to the loopback server.
+         *
+         * @param port the port of the server
+         * @throws IOException if the connection cannot be opened
+         */
+        private Connection(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Buffers one request without sending it.
+         *
+         * @param request the request payload
+         * @throws IOException if the connection fails
+         */
+        private void send(byte[] request) throws IOException {
+            SpellProtocol.writeFrame(out, request);
+        }
+
+        /**
+         * Sends all buffered requests.
+         *
+         * @throws IOException if the connection fails
+         */
+        private void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Reads one response and fails if the server answered with an error.
+         *
+         * @return the response payload
+         * @throws IOException if the connection fails or the server answered with an error
+         */
+        private byte[] receive() throws IOException {
+            byte[] response = SpellProtocol.readFrame(in);
+            if (response[0] == SpellProtocol.ERROR)
+                throw new IOException("Server error: "
+                        + new DataInputStream(new ByteArrayInputStream(response, 1, response.length - 1)).readUTF());
+            return response;
+        }
+
+        /**
+         * Reads one response and fails unless it has the expected status.
+         *
+         * @param status the expected status
+         * @throws IOException if the connection fails or the status differs
+         */
+        private void expectStatus(byte status) throws IOException {
+            byte[] response = receive();
+            if (response[0] != status)
+                throw new IOException("Unexpected status " + response[0]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Loads a catalog into a running SpellServer and measures it.
+     * Usage: SpellLoadGenerator [port] [connections] [requestsPerConnection] [pipelineDepth] [catalogSize]
+     *
+     * @param args command line arguments
+     * @throws Exception if the benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int requestsPerConnection = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int pipelineDepth = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int catalogSize = args.length > 4 ? Integer.parseInt(args[4]) : 10000;
+
+        SpellLoadGenerator generator = new SpellLoadGenerator(port, connections, requestsPerConnection,
+                pipelineDepth, catalogSize);
+        generator.loadCatalog();
+        generator.run();
+    }
+}
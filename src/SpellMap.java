@@ -0,0 +1,88 @@
+/**
+ * SpellMap is a map from the name of a magic spell to the spell words required to cast it.
+ * Implementations hold at most a fixed number of spells given at construction and never remove spells.
+ */
+public interface SpellMap {
+
+    /**
+     * The hash table engines available behind a SpellMap.
+     */
+    enum Engine {
+        /** Open addressing with a double hashing probe sequence, see DoubleHashTable. */
+        DOUBLE_HASH,
+        /** Open addressing over groups of control bytes matched a group at a time, see SwissTableSpellMap. */
+        SWISS_TABLE,
+        /** Bucketized cuckoo hashing with two candidate buckets per name, see CuckooSpellMap. */
+        CUCKOO
+    }
+
+    /**
+     * Creates an empty SpellMap backed by the given engine.
+     *
+     * @param engine   the hash table engine to use
+     * @param capacity the maximum number of spells the map can hold
+     * @return the new SpellMap
+     */
+    static SpellMap create(Engine engine, int capacity) {
+        switch (engine) {
+            case SWISS_TABLE:
+                return new SwissTableSpellMap(capacity);
+            case CUCKOO:
+                return new CuckooSpellMap(capacity);
+            default:
+                return new DoubleHashTable(capacity);
+        }
+    }
+
+    /**
+     * Mixes the hash code of a spell name so that both its high and its low bits are well spread.
+     * Shared by the engines that take a bucket from some bits of the hash and a tag from others.
+     *
+     * @param name the name of the spell
+     * @return the mixed hash value
+     */
+    static int hash(String name) {
+        int h = name.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Inserts a new spell into the map.
+     *
+     * @param spell the SpellSimple object to be inserted
+     * @return true if the spell is successfully inserted, false if a spell with the same name exists or the map is full
+     */
+    boolean put(SpellSimple spell);
+
+    /**
+     * Retrieves the cast words for a spell with the specified name.
+     *
+     * @param name the name of the spell
+     * @return the cast words for the spell if found, or null if the spell is not in the map
+     */
+    String getCastWords(String name);
+
+    /**
+     * Returns the number of spells currently stored in the map.
+     *
+     * @return the size of the map
+     */
+    int getSize();
+
+    /**
+     * Returns the number of steps taken in the last put or getCastWords operation.
+     * What a step is depends on the engine: a probe, a group or a cuckoo displacement.
+     * The count is plain per-map state, so it is only meaningful while a single thread uses the map.
+     *
+     * @return the number of steps
+     */
+    int getLastSteps();
+
+    /**
+     * Returns the number of slots the map allocated. Engines that need free slots to work well allocate
+     * more slots than their capacity, so the occupancy of a full map is getSize() / getSlotCount().
+     *
+     * @return the number of slots
+     */
+    int getSlotCount();
+}
@@ -0,0 +1,98 @@
+import java.util.SplittableRandom;
+
+/**
+ * SpellMapBenchmark compares the SpellMap engines across load factors from 0.5 to 0.95.
+ * For every engine and load factor it fills a fresh map, then times successful and unsuccessful
+ * getCastWords lookups and reports the average time per operation and the average number of steps.
+ * The load factor is relative to the capacity; since engines allocate different numbers of slots for the
+ * same capacity, each row also reports the occupancy, the spells stored per allocated slot.
+ * Each engine is run once untimed first so that the JIT has compiled it.
+ */
+public class SpellMapBenchmark {
+    private static final double[] LOAD_FACTORS = {0.5, 0.6, 0.7, 0.75, 0.8, 0.85, 0.9, 0.95};
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     * Usage: SpellMapBenchmark [capacity]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 65537;  // Prime, as DoubleHashTable needs
+
+        String[] names = new String[capacity];
+        String[] misses = new String[capacity];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < capacity; i++) {
+            names[i] = BenchmarkSpells.randomName(random);
+            misses[i] = BenchmarkSpells.randomName(random) + "?";
+        }
+
+        for (SpellMap.Engine engine : SpellMap.Engine.values())
+            run(engine, capacity, capacity / 2, 0.5, names, misses, false);  // Warms up the JIT
+
+        System.out.println("capacity " + capacity + ", best of " + ROUNDS + " rounds");
+        System.out.printf("%-12s %5s %9s %9s %10s %10s %10s %10s %10s%n",
+                "engine", "load", "occupancy", "stored", "put ns", "hit ns", "hit steps", "miss ns", "miss steps");
+        for (SpellMap.Engine engine : SpellMap.Engine.values()) {
+            for (double loadFactor : LOAD_FACTORS) {
+                run(engine, capacity, (int) (loadFactor * capacity), loadFactor, names, misses, true);
+            }
+        }
+    }
+
+    /**
+     * Benchmarks one engine at one load factor and prints one result row.
+     *
+     * @param engine     the engine to benchmark
+     * @param capacity   the capacity of the map
+     * @param n          the number of spells to insert
+     * @param loadFactor the load factor, for display
+     * @param names      the names of the spells to insert
+     * @param misses     names that are never inserted
+     * @param print      whether to print the result row
+     */
+    private static void run(SpellMap.Engine engine, int capacity, int n, double loadFactor,
+                            String[] names, String[] misses, boolean print) {
+        long bestPut = Long.MAX_VALUE, bestHit = Long.MAX_VALUE, bestMiss = Long.MAX_VALUE;
+        long hitSteps = 0, missSteps = 0;
+        int stored = 0;
+        int slotCount = 0;
+        long sink = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            SpellMap map = SpellMap.create(engine, capacity);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                map.put(new SpellSimple(names[i], names[i]));
+            bestPut = Math.min(bestPut, System.nanoTime() - start);
+            stored = map.getSize();
+            slotCount = map.getSlotCount();
+
+            hitSteps = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                String words = map.getCastWords(names[i]);
+                sink += words == null ? 0 : words.length();
+                hitSteps += map.getLastSteps();
+            }
+            bestHit = Math.min(bestHit, System.nanoTime() - start);
+
+            missSteps = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += map.getCastWords(misses[i]) == null ? 1 : 0;
+                missSteps += map.getLastSteps();
+            }
+            bestMiss = Math.min(bestMiss, System.nanoTime() - start);
+        }
+
+        if (print)
+            System.out.printf("%-12s %5.2f %9.3f %9d %10.1f %10.1f %10.2f %10.1f %10.2f%n",
+                    engine, loadFactor, (double) stored / slotCount, stored, (double) bestPut / n,
+                    (double) bestHit / n, (double) hitSteps / n, (double) bestMiss / n, (double) missSteps / n);
+        if (sink == 42)
+            System.out.println();  // Keeps the lookups from being optimized away
+    }
+}
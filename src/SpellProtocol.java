@@ -0,0 +1,273 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * SpellProtocol defines the length-prefixed binary protocol spoken between SpellServer and its clients.
+ * Every message is a frame made of a 4 byte big-endian payload length followed by the payload.
+ * A request payload starts with an opcode byte, a response payload starts with a status byte,
+ * and strings inside a payload are written with DataOutput.writeUTF.
+ * Responses are sent in the same order as the requests of a connection, so requests may be pipelined.
+ */
+public final class SpellProtocol {
+    /**
+     * Opcode of addSpell(name, category, powerLevel, words), answered with a boolean: true if the spell was stored
+     * in both the spell table and the cast words map, false if either refused it and neither was changed.
+     */
+    public static final byte ADD_SPELL = 1;
+    /** Opcode of searchSpell(category, name, powerLevel), answered with a spell. */
+    public static final byte SEARCH_SPELL = 2;
+    /** Opcode of getTopK(category, k), answered with a count followed by that many spells. */
+    public static final byte GET_TOP_K = 3;
+    /** Opcode of getCastWords(name), answered with the cast words. */
+    public static final byte GET_CAST_WORDS = 4;
+
+    /** Status of a request that succeeded. */
+    public static final byte OK = 0;
+    /** Status of a lookup that found nothing. */
+    public static final byte NOT_FOUND = 1;
+    /** Status of a malformed or failed request, followed by an error message. */
+    public static final byte ERROR = 2;
+
+    /** The largest payload accepted in a single frame. */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private SpellProtocol() {
+    }
+
+    /**
+     * Reads a single frame from the stream.
+     *
+     * @param in the stream to read from
+     * @return the payload of the frame
+     * @throws IOException if the stream ends or the frame length is invalid
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH)
+            throw new IOException("Invalid frame length: " + length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Writes a single frame to the stream. The stream is not flushed.
+     *
+     * @param out     the stream to write to
+     * @param payload the payload of the frame
+     * @throws IOException if writing fails
+     */
+    public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Builds an addSpell request payload.
+     *
+     * @param spell the spell to add
+     * @return the request payload
+     */
+    public static byte[] addSpell(Spell spell) {
+        Payload p = new Payload(ADD_SPELL);
+        p.writeSpell(spell);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds a searchSpell request payload.
+     *
+     * @param category   the category of the spell
+     * @param spellName  the name of the spell
+     * @param powerLevel the power level of the spell
+     * @return the request payload
+     */
+    public static byte[] searchSpell(String category, String spellName, int powerLevel) {
+        Payload p = new Payload(SEARCH_SPELL);
+        p.writeUTF(category);
+        p.writeUTF(spellName);
+        p.writeInt(powerLevel);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds a getTopK request payload.
+     *
+     * @param category the category of the spells
+     * @param k        the number of top spells to retrieve
+     * @return the request payload
+     */
+    public static byte[] getTopK(String category, int k) {
+        Payload p = new Payload(GET_TOP_K);
+        p.writeUTF(category);
+        p.writeInt(k);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds a getCastWords request payload.
+     *
+     * @param name the name of the spell
+     * @return the request payload
+     */
+    public static byte[] getCastWords(String name) {
+        Payload p = new Payload(GET_CAST_WORDS);
+        p.writeUTF(name);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds a response payload that carries only a status.
+     *
+     * @param status the status of the response
+     * @return the response payload
+     */
+    public static byte[] status(byte status) {
+        return new byte[] {status};
+    }
+
+    /**
+     * Builds an OK response payload carrying a boolean.
+     *
+     * @param value the boolean to return
+     * @return the response payload
+     */
+    public static byte[] ok(boolean value) {
+        return new byte[] {OK, (byte) (value ? 1 : 0)};
+    }
+
+    /**
+     * Builds an OK response payload carrying a string.
+     *
+     * @param value the string to return
+     * @return the response payload
+     */
+    public static byte[] ok(String value) {
+        Payload p = new Payload(OK);
+        p.writeUTF(value);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds an OK response payload carrying a spell.
+     *
+     * @param spell the spell to return
+     * @return the response payload
+     */
+    public static byte[] ok(Spell spell) {
+        Payload p = new Payload(OK);
+        p.writeSpell(spell);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds an OK response payload carrying a list of spells.
+     *
+     * @param spells the spells to return
+     * @return the response payload
+     */
+    public static byte[] ok(List<Spell> spells) {
+        Payload p = new Payload(OK);
+        p.writeInt(spells.size());
+        for (Spell s : spells)
+            p.writeSpell(s);
+        return p.toByteArray();
+    }
+
+    /**
+     * Builds an ERROR response payload.
+     *
+     * @param message the error message
+     * @return the response payload
+     */
+    public static byte[] error(String message) {
+        Payload p = new Payload(ERROR);
+        p.writeUTF(message == null ? "" : message);
+        return p.toByteArray();
+    }
+
+    /**
+     * Reads a spell written by a request or response payload.
+     *
+     * @param in the payload to read from
+     * @return the spell read
+     * @throws IOException if the payload is truncated
+     */
+    public static Spell readSpell(DataInput in) throws IOException {
+        String name = in.readUTF();
+        String category = in.readUTF();
+        int powerLevel = in.readInt();
+        String words = in.readUTF();
+        return new Spell(name, category, powerLevel, words);
+    }
+
+    /**
+     * Payload builds a message in memory, starting with an opcode or status byte.
+     * Writing to memory cannot fail, so the IOExceptions declared by DataOutputStream are rethrown unchecked.
+     */
+    private static class Payload {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        /**
+         * Constructs a Payload whose first byte is the given opcode or status.
+         *
+         * @param head the opcode or status byte
+         */
+        private Payload(byte head) {
+            bytes.write(head);
+        }
+
+        /**
+         * Writes an integer to the payload.
+         *
+         * @param value the integer to write
+         */
+        private void writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes a string to the payload.
+         *
+         * @param value the string to write
+         */
+        private void writeUTF(String value) {
+            try {
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes a spell as name, category, power level and words.
+         *
+         * @param spell the spell to write
+         */
+        private void writeSpell(Spell spell) {
+            writeUTF(spell.getName());
+            writeUTF(spell.getCategory());
+            writeInt(spell.getPowerLevel());
+            writeUTF(spell.getWords());
+        }
+
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return the payload bytes
+         */
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
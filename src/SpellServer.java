@@ -0,0 +1,238 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SpellServer is a standalone query server in front of a HashAVLSpellTable and a SpellMap of cast words.
+ * It listens on a loopback socket and answers addSpell, searchSpell, getTopK and getCastWords
+ * requests encoded with SpellProtocol. Every connection is served by its own virtual thread,
+ * which answers the requests of that connection in order, so clients may pipeline requests.
+ */
+public class SpellServer implements AutoCloseable {
+    private final HashAVLSpellTable spellTable;
+    private final SpellMap castWords;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Constructs a SpellServer bound to the given loopback port.
+     *
+     * @param port              the port to listen on, or 0 for any free port
+     * @param tableSize         the size of the category hash table
+     * @param castWordsEngine   the hash table engine of the cast words map
+     * @param castWordsCapacity the capacity of the cast words map
+     * @throws IOException if the port cannot be bound
+     */
+    public SpellServer(int port, int tableSize, SpellMap.Engine castWordsEngine, int castWordsCapacity)
+            throws IOException {
+        spellTable = new HashAVLSpellTable(tableSize);
+        castWords = SpellMap.create(castWordsEngine, castWordsCapacity);
+        serverSocket = new ServerSocket(port, 16384, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing each one to a new virtual thread.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.submit(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed())
+                    System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and waits for the open connections to finish.
+     *
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.close();
+    }
+
+    /**
+     * Serves a single connection: reads request frames and writes the response frames in the same order.
+     * Responses are flushed only once no further pipelined request is already buffered.
+     *
+     * @param socket the connection to serve
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            while (true) {
+                byte[] request = SpellProtocol.readFrame(in);
+                SpellProtocol.writeFrame(out, dispatch(request));
+                if (in.available() == 0)
+                    out.flush();
+            }
+        } catch (IOException e) {
+            // The client closed the connection or sent a malformed frame
+        }
+    }
+
+    /**
+     * Decodes a request payload, runs it against the tables and encodes the response payload.
+     *
+     * @param request the request payload
+     * @return the response payload
+     */
+    private byte[] dispatch(byte[] request) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+        try {
+            byte opcode = in.readByte();
+            switch (opcode) {
+                case SpellProtocol.ADD_SPELL:
+                    return SpellProtocol.ok(addSpell(SpellProtocol.readSpell(in)));
+                case SpellProtocol.SEARCH_SPELL: {
+                    String category = in.readUTF();
+                    String spellName = in.readUTF();
+                    int powerLevel = in.readInt();
+                    Spell spell = searchSpell(category, spellName, powerLevel);
+                    return spell == null ? SpellProtocol.status(SpellProtocol.NOT_FOUND) : SpellProtocol.ok(spell);
+                }
+                case SpellProtocol.GET_TOP_K: {
+                    String category = in.readUTF();
+                    int k = in.readInt();
+                    if (k < 0)
+                        return SpellProtocol.error("Negative k: " + k);
+                    List<Spell> topK = getTopK(category, k);
+                    if (topK == null)
+                        return SpellProtocol.status(SpellProtocol.NOT_FOUND);
+                    byte[] response = SpellProtocol.ok(topK);
+                    if (response.length > SpellProtocol.MAX_FRAME_LENGTH)
+                        return SpellProtocol.error("Top " + k + " of " + category + " does not fit in a frame");
+                    return response;
+                }
+                case SpellProtocol.GET_CAST_WORDS: {
+                    String words = getCastWords(in.readUTF());
+                    return words == null ? SpellProtocol.status(SpellProtocol.NOT_FOUND) : SpellProtocol.ok(words);
+                }
+                default:
+                    return SpellProtocol.error("Unknown opcode: " + opcode);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            return SpellProtocol.error("Malformed request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return SpellProtocol.error(e.toString());
+        }
+    }
+
+    /**
+     * Adds a spell to the category table and its cast words to the cast words table, or to neither.
+     * The spell table is checked first and changed last, so a refusal or failure leaves both tables unchanged.
+     *
+     * @param spell the spell to add
+     * @return true if the spell was stored in both tables, false if its power level is taken in its category,
+     *         its name exists in the cast words map or the cast words map is full
+     */
+    private boolean addSpell(Spell spell) {
+        lock.writeLock().lock();
+        try {
+            if (spellTable.hasPowerLevel(spell.getCategory(), spell.getPowerLevel()))
+                return false;
+            if (!castWords.put(new SpellSimple(spell.getName(), spell.getWords())))
+                return false;
+            return spellTable.addSpell(spell);  // Cannot refuse, as the power level is free
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for a spell by category, name and power level.
+     *
+     * @param category   the category of the spell
+     * @param spellName  the name of the spell
+     * @param powerLevel the power level of the spell
+     * @return the spell if found, null otherwise
+     */
+    private Spell searchSpell(String category, String spellName, int powerLevel) {
+        lock.readLock().lock();
+        try {
+            return spellTable.searchSpell(category, spellName, powerLevel);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the top K spells of a category.
+     *
+     * @param category the category of the spells
+     * @param k        the number of top spells to retrieve
+     * @return the top K spells, or null if the category does not exist
+     */
+    private List<Spell> getTopK(String category, int k) {
+        lock.readLock().lock();
+        try {
+            return spellTable.getTopK(category, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the cast words of a spell. Readers share the lock, so the step count the cast words map
+     * records for its last operation is overwritten by concurrent lookups and is meaningless here.
+     *
+     * @param name the name of the spell
+     * @return the cast words, or null if the spell does not exist
+     */
+    private String getCastWords(String name) {
+        lock.readLock().lock();
+        try {
+            return castWords.getCastWords(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a SpellServer on the loopback interface.
+     * Usage: SpellServer [port] [tableSize] [castWordsCapacity] [DOUBLE_HASH|SWISS_TABLE|CUCKOO]
+     *
+     * @param args command line arguments
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int tableSize = args.length > 1 ? Integer.parseInt(args[1]) : 1009;
+        int castWordsCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 262147;
+        SpellMap.Engine engine = args.length > 3 ? SpellMap.Engine.valueOf(args[3]) : SpellMap.Engine.DOUBLE_HASH;
+
+        try (SpellServer server = new SpellServer(port, tableSize, engine, castWordsCapacity)) {
+            System.out.println("SpellServer listening on " + InetAddress.getLoopbackAddress().getHostAddress()
+                    + ":" + server.getPort());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * SwissTableSpellMap is a SpellMap in the style of a Swiss table.
+ * Slots are split into groups of 8, and every slot has a control byte that is either EMPTY or the low
+ * 7 bits of the hash of the name stored there. A lookup loads the 8 control bytes of a group as one long
+ * and matches all of them against the 7 hash bits at once (SWAR), so only slots whose control byte matches
+ * are compared by name. Groups are probed linearly, and a group with an empty slot ends the probe sequence.
+ * The map allocates at least capacity / 0.875 slots, so a full map still has empty slots to end every probe.
+ */
+public class SwissTableSpellMap implements SpellMap {
+    private static final int GROUP_SIZE = 8;
+    private static final double MAX_LOAD_FACTOR = 0.875;  // At most 7 of every 8 slots are full
+    private static final byte EMPTY = (byte) 0x80;
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+    private static final VarHandle GROUP =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] control;
+    private final SpellSimple[] slots;
+    private final int groups;
+    private final int capacity;
+    private int size;
+    private int steps = 0;
+
+    /**
+     * Constructs a SwissTableSpellMap with the specified capacity.
+     *
+     * @param capacity the maximum number of spells the map can hold
+     */
+    public SwissTableSpellMap(int capacity) {
+        this.capacity = capacity;
+        int slotCount = Math.max(capacity + 1, (int) Math.ceil(capacity / MAX_LOAD_FACTOR));
+        groups = (slotCount + GROUP_SIZE - 1) / GROUP_SIZE;
+        control = new byte[groups * GROUP_SIZE];
+        slots = new SpellSimple[groups * GROUP_SIZE];
+        Arrays.fill(control, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Inserts a new spell into the map.
+     *
+     * @param spell the SpellSimple object to be inserted
+     * @return true if the spell is successfully inserted, false if a spell with the same name exists or the map is full
+     */
+    @Override
+    public boolean put(SpellSimple spell) {
+        int hash = SpellMap.hash(spell.getName());
+        int group = groupIndex(hash);
+        byte tag = tag(hash);
+
+        for (int i = 0; i < groups; i++) {
+            steps = i;
+            int base = group * GROUP_SIZE;
+            long word = (long) GROUP.get(control, base);
+
+            for (long m = match(word, tag); m != 0; m &= m - 1) {
+                if (slots[base + lowestByte(m)].getName().equals(spell.getName()))
+                    return false;  // Spell with the same name already exists
+            }
+            long empty = matchEmpty(word);
+            if (empty != 0) {
+                if (size >= capacity)
+                    return false;
+                int slot = base + lowestByte(empty);
+                slots[slot] = spell;
+                control[slot] = tag;
+                size++;
+                return true;
+            }
+            group = group + 1 == groups ? 0 : group + 1;
+        }
+        steps = groups;
+        return false;
+    }
+
+    /**
+     * Retrieves the cast words for a spell with the specified name.
+     *
+     * @param name the name of the spell
+     * @return the cast words for the spell if found, or null if the spell is not in the map
+     */
+    @Override
+    public String getCastWords(String name) {
+        int hash = SpellMap.hash(name);
+        int group = groupIndex(hash);
+        byte tag = tag(hash);
+
+        for (int i = 0; i < groups; i++) {
+            steps = i;
+            int base = group * GROUP_SIZE;
+            long word = (long) GROUP.get(control, base);
+
+            for (long m = match(word, tag); m != 0; m &= m - 1) {
+                SpellSimple candidate = slots[base + lowestByte(m)];
+                if (candidate.getName().equals(name))
+                    return candidate.getWords();
+            }
+            if (matchEmpty(word) != 0)
+                return null;
+            group = group + 1 == groups ? 0 : group + 1;
+        }
+        steps = groups;
+        return null;
+    }
+
+    /**
+     * Returns the number of spells currently stored in the map.
+     *
+     * @return the size of the map
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of groups probed after the first one in the last put or getCastWords operation.
+     *
+     * @return the number of steps
+     */
+    @Override
+    public int getLastSteps() { return steps; }
+
+    /**
+     * Returns the number of slots the map allocated.
+     *
+     * @return the number of slots
+     */
+    @Override
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the first group probed for a hash value, taken from its upper 25 bits.
+     *
+     * @param hash the mixed hash value
+     * @return the group index
+     */
+    private int groupIndex(int hash) {
+        return (hash >>> 7) % groups;
+    }
+
+    /**
+     * Returns the control byte stored for a hash value, taken from its lower 7 bits.
+     *
+     * @param hash the mixed hash value
+     * @return the control byte, which never has its high bit set
+     */
+    private static byte tag(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    /**
+     * Returns a mask with the high bit set in every byte of the group equal to the tag.
+     * The classic zero-byte test may also flag a byte just above a real match, which is harmless
+     * because every flagged slot is full and gets compared by name.
+     *
+     * @param word the 8 control bytes of a group
+     * @param tag  the control byte to look for
+     * @return the match mask
+     */
+    private static long match(long word, byte tag) {
+        long x = word ^ (LSB * tag);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    /**
+     * Returns a mask with the high bit set in every empty byte of the group.
+     *
+     * @param word the 8 control bytes of a group
+     * @return the empty mask
+     */
+    private static long matchEmpty(long word) {
+        return word & MSB;
+    }
+
+    /**
+     * Returns the position within its group of the lowest byte flagged in a mask.
+     *
+     * @param mask a non-zero match mask
+     * @return the position of the byte, between 0 and 7
+     */
+    private static int lowestByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+}
@@ -1,4 +1,16 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Tester class is responsible for testing the functionality of the HashAVLSpellTable.
@@ -54,6 +66,13 @@ public class Tester {
         System.out.println("Table size: " + size); // prints "Table size: 7"
         System.out.println(" ");
 
+        // Run the same sequence against every SpellMap engine
+        System.out.println("Part 1 Engine Tests: ");
+        for (SpellMap.Engine engine : SpellMap.Engine.values()) {
+            System.out.println(engine + ": " + (testEngine(engine) ? "passed" : "FAILED"));
+        }
+        System.out.println(" ");
+
 
         ///////////////////////////////////// PART 2 //////////////////////////////////////
         System.out.println("Part 2 Tests: ");
@@ -139,6 +158,379 @@ public class Tester {
         // print the updated number of fire spells and total number of spells
         System.out.println("The current number of fire spells is " + table2.getNumberSpells("fire"));
         System.out.println("The current number of spells is " + table2.getNumberSpells());
+        System.out.println(" ");
+
+        // Check power level quantiles and histograms on a small table, where they are exact
+        System.out.println("Part 2 Power Summary Tests: " + (testPowerSummaries() ? "passed" : "FAILED"));
+
+        // Check the events a change feed receives for a few inserts, including one that is not stored
+        System.out.println("Part 2 Change Feed Tests: " + (testChangeFeed() ? "passed" : "FAILED"));
+
+        // Check that the membership filters never reject a stored spell
+        System.out.println("Membership Filter Tests: " + (testFilters() ? "passed" : "FAILED"));
+
+        // Check the query server's responses to a pipelined batch of requests
+        System.out.println("Query Server Tests: " + (testServer() ? "passed" : "FAILED"));
+
+    }
+
+    /**
+     * Runs the Part 1 sequence of puts, a duplicate, a full table and misses against a SpellMap engine.
+     *
+     * @param engine the engine to test
+     * @return true if every check passed
+     */
+    private static boolean testEngine(SpellMap.Engine engine) {
+        String[] names = {"Abracadabra", "Expecto Patronum", "Wingardium Leviosa", "Shazam", "Lumos", "Nox", "Alohomora"};
+        SpellMap map = SpellMap.create(engine, names.length);
+        boolean passed = true;
+
+        for (int i = 0; i < 4; i++)
+            passed &= check(engine + " put " + names[i], map.put(new SpellSimple(names[i], "words " + i)), true);
+        passed &= check(engine + " get Shazam", map.getCastWords("Shazam"), "words 3");
+        passed &= check(engine + " size", map.getSize(), 4);
+        passed &= check(engine + " duplicate put", map.put(new SpellSimple("Abracadabra", "Expelliarmus")), false);
+        passed &= check(engine + " get after duplicate", map.getCastWords("Abracadabra"), "words 0");
+
+        for (int i = 4; i < names.length; i++)
+            passed &= check(engine + " put " + names[i], map.put(new SpellSimple(names[i], "words " + i)), true);
+        passed &= check(engine + " put into full map", map.put(new SpellSimple("Accio", "Summon the object")), false);
+        passed &= check(engine + " size when full", map.getSize(), names.length);
+        for (int i = 0; i < names.length; i++)
+            passed &= check(engine + " get " + names[i], map.getCastWords(names[i]), "words " + i);
+        passed &= check(engine + " get missing", map.getCastWords("Accio"), null);
+        passed &= check(engine + " get missing", map.getCastWords("Nox!"), null);
+        return passed;
+    }
+
+    /**
+     * Checks the per-category and merged power level summaries of a small HashAVLSpellTable against exact values.
+     * With fewer spells than the KllSketch capacity, quantiles are exact: the power level at rank ceil(q * n).
+     *
+     * @return true if every check passed
+     */
+    private static boolean testPowerSummaries() {
+        HashAVLSpellTable table = new HashAVLSpellTable(10, 5);
+        int[] firePowers = {12, 3, 21, 7, 14};
+        for (int power : firePowers)
+            table.addSpell(new Spell("fire " + power, "fire", power, "burn"));
+        table.addSpell(new Spell("ice 2", "ice", 2, "freeze"));
+        table.addSpell(new Spell("ice 1", "ice", 1, "freeze"));
+        boolean passed = true;
+
+        passed &= check("fire quantile 0", table.quantile("fire", 0), 3);
+        passed &= check("fire quantile 0.2", table.quantile("fire", 0.2), 3);
+        passed &= check("fire quantile 0.5", table.quantile("fire", 0.5), 12);
+        passed &= check("fire quantile 0.8", table.quantile("fire", 0.8), 14);
+        passed &= check("fire quantile 1", table.quantile("fire", 1), 21);
+        passed &= check("missing category quantile", table.quantile("water", 0.5), null);
 
+        PowerHistogram fire = table.histogram("fire");
+        passed &= check("fire histogram bins", bins(fire), "0:1 5:1 10:2 15:0 20:1");
+        fire.add(999);
+        passed &= check("fire histogram after changing a copy", bins(table.histogram("fire")), "0:1 5:1 10:2 15:0 20:1");
+        passed &= check("missing category histogram", table.histogram("water"), null);
+
+        PowerSummary all = table.getPowerSummary();
+        passed &= check("merged count", all.getCount(), 7L);
+        passed &= check("merged quantile 0.5", all.quantile(0.5), 7);
+        passed &= check("merged quantile 0.3", all.quantile(0.3), 3);
+        passed &= check("merged histogram bins", bins(all.getHistogram()), "0:3 5:1 10:2 15:0 20:1");
+        all.add(-50);
+        passed &= check("fire count after changing a merged copy", table.getPowerSummary("fire").getCount(), 5L);
+        return passed;
+    }
+
+    /**
+     * Checks the exact sequence of INSERT, TOP_K_CHANGE and SIZE_CHANGE events published by a few addSpell calls.
+     * A spell whose power level is already taken in its category is not stored, so it publishes nothing.
+     *
+     * @return true if every check passed
+     */
+    private static boolean testChangeFeed() {
+        HashAVLSpellTable table = new HashAVLSpellTable(10);
+        SpellChangeFeed feed = new SpellChangeFeed(64, SpellChangeFeed.OverflowPolicy.BLOCK);
+        table.setChangeFeed(feed, 2);
+        List<String> events = new CopyOnWriteArrayList<>();
+        SpellChangeFeed.Subscription subscription = feed.subscribe((event, endOfBatch) -> events.add(event.toString()));
+
+        table.addSpell(new Spell("a", "fire", 5, "a!"));
+        table.addSpell(new Spell("b", "fire", 9, "b!"));
+        table.addSpell(new Spell("c", "fire", 1, "c!"));
+        table.addSpell(new Spell("d", "fire", 7, "d!"));
+        table.addSpell(new Spell("e", "fire", 9, "e!"));  // Power level 9 is taken by b
+        table.addSpell(new Spell("f", "ice", 3, "f!"));
+        while (subscription.getSequence() < feed.getCursor())
+            LockSupport.parkNanos(1_000_000);
+        subscription.close();
+
+        List<String> expected = List.of(
+                "#0 INSERT a (fire)", "#1 TOP_K_CHANGE fire: a in", "#2 SIZE_CHANGE 1",
+                "#3 INSERT b (fire)", "#4 TOP_K_CHANGE fire: b in", "#5 SIZE_CHANGE 2",
+                "#6 INSERT c (fire)", "#7 SIZE_CHANGE 3",
+                "#8 INSERT d (fire)", "#9 TOP_K_CHANGE fire: d in, a out", "#10 SIZE_CHANGE 4",
+                "#11 INSERT f (ice)", "#12 TOP_K_CHANGE ice: f in", "#13 SIZE_CHANGE 5");
+        boolean passed = check("events", events, expected);
+        passed &= check("number of spells", table.getNumberSpells(), 5);
+        passed &= check("number of fire spells", table.getNumberSpells("fire"), 4);
+        passed &= check("fire top 4 size", table.getTopK("fire", 4).size(), 4);
+
+        // A subscriber stuck on its first event fills a ring of 2, so the next 3 events are dropped
+        SpellChangeFeed small = new SpellChangeFeed(2, SpellChangeFeed.OverflowPolicy.DROP_NEWEST);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> gaps = new CopyOnWriteArrayList<>();
+        SpellChangeFeed.Subscription stuck = small.subscribe((event, endOfBatch) -> {
+            gaps.add(event.getSequence() + ":" + event.getDroppedBefore());
+            awaitQuietly(release);
+        });
+        for (int size = 0; size < 5; size++)
+            small.publish(SpellEvent.sizeChange(size));
+        release.countDown();
+        while (stuck.getSequence() < small.getCursor())
+            LockSupport.parkNanos(1_000_000);
+        small.publish(SpellEvent.sizeChange(5));
+        while (stuck.getSequence() < small.getCursor())
+            LockSupport.parkNanos(1_000_000);
+        stuck.close();
+        passed &= check("sequence:droppedBefore", gaps, List.of("0:0", "1:0", "2:3"));
+        passed &= check("subscription dropped", stuck.getDropped(), 3L);
+
+        // A listener that throws ends its subscription and leaves the exception behind
+        SpellChangeFeed failing = new SpellChangeFeed(8, SpellChangeFeed.OverflowPolicy.BLOCK);
+        SpellChangeFeed.Subscription failed = failing.subscribe((event, endOfBatch) -> {
+            throw new IllegalStateException("listener failed");
+        });
+        failing.publish(SpellEvent.sizeChange(1));
+        while (failing.hasSubscribers())
+            LockSupport.parkNanos(1_000_000);
+        passed &= check("failure", String.valueOf(failed.getFailure()), "java.lang.IllegalStateException: listener failed");
+        return passed;
+    }
+
+    /**
+     * Waits for a latch, giving up if interrupted.
+     *
+     * @param latch the latch to wait for
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks that neither table loses a stored spell to its filter across enableFilter, addSpell or put,
+     * freezeFilter, and addSpell or put again, and that a put after freezing switches back to a Bloom filter that
+     * still rejects absent spells, even when the table was frozen without calling enableFilter first.
+     *
+     * @return true if every check passed
+     */
+    private static boolean testFilters() {
+        boolean passed = true;
+
+        DoubleHashTable castWords = new DoubleHashTable(211);
+        int stored = 0;
+        for (; stored < 50; stored++)
+            castWords.put(new SpellSimple("spell " + stored, "words " + stored));
+        castWords.enableFilter(BlockedBloomFilter.DEFAULT_BITS_PER_KEY);
+        passed &= checkCastWords("DoubleHashTable after enableFilter", castWords, stored);
+        for (; stored < 100; stored++)
+            castWords.put(new SpellSimple("spell " + stored, "words " + stored));
+        passed &= checkCastWords("DoubleHashTable after put", castWords, stored);
+        castWords.freezeFilter();
+        passed &= check("DoubleHashTable frozen filter", castWords.getFilter() instanceof XorFilter, true);
+        passed &= checkCastWords("DoubleHashTable after freezeFilter", castWords, stored);
+        for (; stored < 150; stored++)
+            castWords.put(new SpellSimple("spell " + stored, "words " + stored));
+        passed &= check("DoubleHashTable filter after put", castWords.getFilter() instanceof BlockedBloomFilter, true);
+        passed &= checkCastWords("DoubleHashTable after put to a frozen table", castWords, stored);
+
+        HashAVLSpellTable spells = new HashAVLSpellTable(10);
+        spells.enableFilter(10, BlockedBloomFilter.DEFAULT_BITS_PER_KEY);  // Small, so addSpell has to grow it
+        stored = 0;
+        for (; stored < 100; stored++)
+            spells.addSpell(new Spell("spell " + stored, "category " + stored % 7, stored, "words"));
+        passed &= checkSpells("HashAVLSpellTable after addSpell", spells, stored);
+        spells.freezeFilter();
+        passed &= check("HashAVLSpellTable frozen filter", spells.getFilter() instanceof XorFilter, true);
+        passed &= checkSpells("HashAVLSpellTable after freezeFilter", spells, stored);
+        for (; stored < 150; stored++)
+            spells.addSpell(new Spell("spell " + stored, "category " + stored % 7, stored, "words"));
+        passed &= check("HashAVLSpellTable filter after addSpell", spells.getFilter() instanceof BlockedBloomFilter, true);
+        passed &= checkSpells("HashAVLSpellTable after addSpell to a frozen table", spells, stored);
+
+        DoubleHashTable unsized = new DoubleHashTable(211);  // Frozen without enableFilter giving bits per key
+        for (stored = 0; stored < 50; stored++)
+            unsized.put(new SpellSimple("spell " + stored, "words " + stored));
+        unsized.freezeFilter();
+        for (; stored < 100; stored++)
+            unsized.put(new SpellSimple("spell " + stored, "words " + stored));
+        passed &= checkCastWords("DoubleHashTable frozen without enableFilter", unsized, stored);
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++)
+            falsePositives += unsized.getFilter().mightContain(MembershipFilter.hash("absent " + i)) ? 1 : 0;
+        passed &= check("DoubleHashTable frozen without enableFilter, under 100 of 1000 absent spells pass",
+                falsePositives < 100, true);
+        return passed;
+    }
+
+    /**
+     * Checks that a filtered DoubleHashTable finds every stored spell and misses absent ones.
+     *
+     * @param description what was checked
+     * @param table       the table
+     * @param stored      the number of spells stored, named "spell 0" onwards
+     * @return true if every check passed
+     */
+    private static boolean checkCastWords(String description, DoubleHashTable table, int stored) {
+        boolean passed = true;
+        for (int i = 0; i < stored; i++)
+            passed &= check(description + ", spell " + i, table.getCastWords("spell " + i), "words " + i);
+        passed &= check(description + ", absent spell", table.getCastWords("spell " + stored), null);
+        return passed;
+    }
+
+    /**
+     * Checks that a filtered HashAVLSpellTable finds every stored spell and misses absent ones.
+     *
+     * @param description what was checked
+     * @param table       the table
+     * @param stored      the number of spells stored, with spell i in category i mod 7 at power level i
+     * @return true if every check passed
+     */
+    private static boolean checkSpells(String description, HashAVLSpellTable table, int stored) {
+        boolean passed = true;
+        for (int i = 0; i < stored; i++) {
+            Spell s = table.searchSpell("category " + i % 7, "spell " + i, i);
+            passed &= check(description + ", spell " + i, s == null ? null : s.getName(), "spell " + i);
+        }
+        passed &= check(description + ", wrong power level", table.searchSpell("category 0", "spell 0", 1), null);
+        passed &= check(description + ", absent spell", table.searchSpell("category 0", "spell " + stored, stored), null);
+        return passed;
+    }
+
+    /**
+     * Starts a SpellServer on a free port and sends it one pipelined batch of requests: adds that are stored or
+     * refused, lookups that hit or miss, and requests answered with an error. Checks every response in order.
+     *
+     * @return true if every check passed
+     */
+    private static boolean testServer() {
+        String longName = "\uFFFF".repeat(21000);  // Long enough for the DoubleHashTable hash sum to overflow
+        byte[][] requests = {
+                SpellProtocol.addSpell(new Spell("fireball", "fire", 10, "fireball!")),
+                SpellProtocol.addSpell(new Spell("frostbolt", "ice", 7, "freeze please")),
+                SpellProtocol.addSpell(new Spell("fireball II", "fire", 10, "fireball!!")),  // Power level 10 is taken
+                SpellProtocol.addSpell(new Spell("fireball", "ice", 8, "cold fire")),  // The name is taken
+                SpellProtocol.addSpell(new Spell(longName, "long", 1, "long words")),
+                SpellProtocol.searchSpell("fire", "fireball", 10),
+                SpellProtocol.searchSpell("ice", "fireball", 8),
+                SpellProtocol.searchSpell("long", longName, 1),
+                SpellProtocol.getTopK("fire", 5),
+                SpellProtocol.getTopK("water", 3),
+                SpellProtocol.getCastWords("frostbolt"),
+                SpellProtocol.getCastWords("fireball II"),
+                SpellProtocol.getTopK("fire", -1),
+                new byte[] {99},  // Unknown opcode
+                new byte[] {SpellProtocol.SEARCH_SPELL},  // Truncated payload
+                SpellProtocol.getCastWords("fireball"),
+        };
+        List<String> expected = List.of(
+                "OK true", "OK true", "OK false", "OK false", "OK true",
+                "OK fireball", "NOT_FOUND", "OK <21000 chars>",
+                "OK [fireball]", "NOT_FOUND",
+                "OK freeze please", "NOT_FOUND",
+                "ERROR", "ERROR", "ERROR",
+                "OK fireball!");
+
+        List<String> responses = new ArrayList<>();
+        try (SpellServer server = new SpellServer(0, 10, SpellMap.Engine.DOUBLE_HASH, 101)) {
+            Thread.ofVirtual().start(server::serve);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                for (byte[] request : requests)
+                    SpellProtocol.writeFrame(out, request);
+                out.flush();  // One flush, so the server sees the whole batch pipelined
+                for (byte[] request : requests)
+                    responses.add(describe(request[0], SpellProtocol.readFrame(in)));
+            }
+        } catch (IOException e) {
+            System.out.println("  server failed: " + e);
+            return false;
+        }
+        return check("responses", responses, expected);
+    }
+
+    /**
+     * Describes a response as its status followed by its value, such as "OK true" or "NOT_FOUND".
+     * Long names are abbreviated to their length, so a failed check stays readable.
+     *
+     * @param opcode   the opcode of the request that was answered
+     * @param response the response payload
+     * @return the description
+     * @throws IOException if the response is truncated
+     */
+    private static String describe(byte opcode, byte[] response) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response));
+        byte status = in.readByte();
+        if (status == SpellProtocol.NOT_FOUND)
+            return "NOT_FOUND";
+        if (status == SpellProtocol.ERROR)
+            return "ERROR";
+        switch (opcode) {
+            case SpellProtocol.ADD_SPELL:
+                return "OK " + in.readBoolean();
+            case SpellProtocol.SEARCH_SPELL:
+                return "OK " + abbreviate(SpellProtocol.readSpell(in).getName());
+            case SpellProtocol.GET_TOP_K: {
+                List<String> names = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--)
+                    names.add(SpellProtocol.readSpell(in).getName());
+                return "OK " + names;
+            }
+            default:
+                return "OK " + in.readUTF();
+        }
+    }
+
+    /**
+     * Abbreviates a string longer than 40 characters to its length.
+     *
+     * @param s the string
+     * @return the string, or "<length chars>"
+     */
+    private static String abbreviate(String s) {
+        return s.length() > 40 ? "<" + s.length() + " chars>" : s;
+    }
+
+    /**
+     * Formats the bins of a histogram as "start:count" pairs.
+     *
+     * @param histogram the histogram to format
+     * @return the bins
+     */
+    private static String bins(PowerHistogram histogram) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < histogram.getNumberBins(); i++)
+            sb.append(i == 0 ? "" : " ").append(histogram.getBinStart(i)).append(':').append(histogram.getBinCount(i));
+        return sb.toString();
+    }
+
+    /**
+     * Compares a result with its expected value and prints the difference if they do not match.
+     *
+     * @param description what was checked
+     * @param actual      the result
+     * @param expected    the expected result
+     * @return true if the result matches
+     */
+    private static boolean check(String description, Object actual, Object expected) {
+        boolean matches = actual == null ? expected == null : actual.equals(expected);
+        if (!matches)
+            System.out.println("  " + description + ": expected " + expected + " but got " + actual);
+        return matches;
     }
 }
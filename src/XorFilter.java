@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+/**
+ * XorFilter is a static MembershipFilter built once from a fixed set of keys (Graf and Lemire's xor filter).
+ * Every key maps to three slots of an array of 8-bit fingerprints, one in each third of the array, and the
+ * array is filled so that the three slots of every key xor to the key's fingerprint. A lookup reads three
+ * bytes, and the false positive rate is 1/256 at about 9.84 bits per key (1.23 fingerprints of 8 bits).
+ * Keys cannot be added after building.
+ */
+public class XorFilter implements MembershipFilter {
+    private static final int MAX_ATTEMPTS = 100;
+
+    private final byte[] fingerprints;
+    private final int blockLength;
+    private final long seed;
+
+    /**
+     * Constructs an XorFilter from its built state. Use build instead.
+     */
+    private XorFilter(byte[] fingerprints, int blockLength, long seed) {
+        this.fingerprints = fingerprints;
+        this.blockLength = blockLength;
+        this.seed = seed;
+    }
+
+    /**
+     * Builds an XorFilter holding the given keys. Duplicate keys are allowed.
+     *
+     * @param keys the 64-bit hashes of the keys
+     * @return the filter
+     * @throws IllegalStateException if no seed leads to a valid construction, which is vanishingly unlikely
+     */
+    public static XorFilter build(long[] keys) {
+        long[] unique = distinct(keys);
+        int n = unique.length;
+        int blockLength = (int) Math.ceil((32 + 1.23 * n) / 3);
+        int size = 3 * blockLength;
+
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++, seed = MembershipFilter.mix(seed)) {
+            int[] counts = new int[size];
+            long[] xors = new long[size];
+            for (long key : unique) {
+                long hash = MembershipFilter.mix(key + seed);
+                for (int j = 0; j < 3; j++) {
+                    int slot = slot(hash, j, blockLength);
+                    counts[slot]++;
+                    xors[slot] ^= hash;
+                }
+            }
+
+            int[] queue = new int[size];
+            int queued = 0;
+            for (int i = 0; i < size; i++) {
+                if (counts[i] == 1)
+                    queue[queued++] = i;
+            }
+            long[] stackHashes = new long[n];
+            int[] stackSlots = new int[n];
+            int stacked = 0;
+            while (queued > 0) {
+                int i = queue[--queued];
+                if (counts[i] != 1)
+                    continue;
+                long hash = xors[i];
+                stackHashes[stacked] = hash;
+                stackSlots[stacked++] = i;
+                for (int j = 0; j < 3; j++) {
+                    int slot = slot(hash, j, blockLength);
+                    counts[slot]--;
+                    xors[slot] ^= hash;
+                    if (counts[slot] == 1)
+                        queue[queued++] = slot;
+                }
+            }
+            if (stacked < n)
+                continue;  // The keys did not peel completely; try another seed
+
+            byte[] fingerprints = new byte[size];
+            for (int s = stacked - 1; s >= 0; s--) {
+                long hash = stackHashes[s];
+                int found = stackSlots[s];
+                byte value = fingerprint(hash);
+                for (int j = 0; j < 3; j++) {
+                    int slot = slot(hash, j, blockLength);
+                    if (slot != found)
+                        value ^= fingerprints[slot];
+                }
+                fingerprints[found] = value;
+            }
+            return new XorFilter(fingerprints, blockLength, seed);
+        }
+        throw new IllegalStateException("Could not build an xor filter for " + n + " keys");
+    }
+
+    /**
+     * Returns false if the key was certainly not in the set the filter was built from, true if it may have been.
+     *
+     * @param key the 64-bit hash of the key
+     * @return true if the key may be in the set
+     */
+    @Override
+    public boolean mightContain(long key) {
+        long hash = MembershipFilter.mix(key + seed);
+        byte f = fingerprint(hash);
+        return f == (byte) (fingerprints[slot(hash, 0, blockLength)]
+                ^ fingerprints[slot(hash, 1, blockLength)]
+                ^ fingerprints[slot(hash, 2, blockLength)]);
+    }
+
+    /**
+     * Returns the memory used by the fingerprints.
+     *
+     * @return the size in bytes
+     */
+    @Override
+    public long getSizeInBytes() {
+        return fingerprints.length;
+    }
+
+    /**
+     * Returns the slot of a hash in the j-th third of the fingerprint array.
+     *
+     * @param hash        the seeded hash of the key
+     * @param j           the third, 0, 1 or 2
+     * @param blockLength the length of a third
+     * @return the slot index
+     */
+    private static int slot(long hash, int j, int blockLength) {
+        long r = Long.rotateLeft(hash, 21 * j);
+        return (int) (((r & 0xFFFFFFFFL) * blockLength) >>> 32) + j * blockLength;
+    }
+
+    /**
+     * Returns the 8-bit fingerprint of a hash.
+     *
+     * @param hash the seeded hash of the key
+     * @return the fingerprint
+     */
+    private static byte fingerprint(long hash) {
+        return (byte) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Returns the distinct keys, since a repeated key would never peel.
+     *
+     * @param keys the keys
+     * @return the keys without duplicates
+     */
+    private static long[] distinct(long[] keys) {
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[n++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+}